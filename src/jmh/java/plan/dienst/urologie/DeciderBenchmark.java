@@ -0,0 +1,35 @@
+package plan.dienst.urologie;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single questions against a finished plan, cycling through the seeded probes of PlanningState.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeciderBenchmark {
+
+    @Benchmark
+    public boolean canWorkShift(PlanningState state) {
+        int i = state.nextProbe();
+        return state.shiftDecider.canWorkShift(state.dienstplan, state.probeDoctors[i], state.probeDates[i]);
+    }
+
+    @Benchmark
+    public boolean canWork(PlanningState state) {
+        int i = state.nextProbe();
+        return state.dayJobDecider.canWork(state.dienstplan, state.probeDoctors[i], state.probeDates[i], state.probeJobs[i]);
+    }
+
+    @Benchmark
+    public int getTimesDoctorScheduledThisMonth(PlanningState state) {
+        int i = state.nextProbe();
+        return state.dataFinder.getTimesDoctorScheduledThisMonth(state.dienstplan, state.probeDates[i],
+                state.probeDoctors[i], state.probeJobs[i]);
+    }
+}
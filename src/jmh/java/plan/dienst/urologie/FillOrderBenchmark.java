@@ -0,0 +1,36 @@
+package plan.dienst.urologie;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * makePlan with the day jobs filled date by date and most constrained slot first, see
+ * PlanBuilder.fillMostConstrainedFirst. The repair is turned off, so the time is that of the fill alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FillOrderBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class FillOrder {
+
+        @Param({"false", "true"})
+        boolean mostConstrainedFirst;
+
+        @Setup(Level.Trial)
+        public void setUp(PlanningState state) {
+            state.planBuilder.setMostConstrainedFirst(mostConstrainedFirst);
+            state.planBuilder.setRepairSteps(0);
+        }
+    }
+
+    @Benchmark
+    public Dienstplan makePlan(PlanningState state, FillOrder order) {
+        return state.planBuilder.makePlan(state.presets, PlanningState.JAHR, PlanningState.QUARTIL,
+                PlanningState.SEED);
+    }
+}
@@ -0,0 +1,87 @@
+package plan.dienst.urologie;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * makePlan for departments of up to 300 doctors. The synthetic roster repeats the doctors of roster.json and adds
+ * a day job for every ten doctors beyond the eleven, so the doctors stay busy as the roster grows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LargeRosterBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class LargeRoster {
+
+        @Param({"11", "50", "150", "300"})
+        int doctorCount;
+
+        Jobs jobs;
+        Doctors doctors;
+        PlanBuilder planBuilder;
+        Presets presets;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Roster base = new Roster(new ClassPathResource("roster.json"));
+            Roster roster = new Roster(doctors(base.getDoctors()), jobs(base.getJobs()));
+            jobs = new Jobs(roster);
+            doctors = new Doctors(roster);
+            DataFinder dataFinder = new DataFinder(jobs);
+            DayJobDecider dayJobDecider = new DayJobDecider(jobs, doctors, dataFinder);
+            ShiftDecider shiftDecider = new ShiftDecider(jobs, dataFinder);
+            PlanMetrics planMetrics = new PlanMetrics(new SimpleMeterRegistry());
+            Statistics statistics = new Statistics(jobs, doctors, dataFinder);
+            planBuilder = new PlanBuilder(jobs, doctors, dataFinder, dayJobDecider, shiftDecider,
+                    new ShiftOrganizer(shiftDecider, doctors, jobs, dataFinder, planMetrics), statistics,
+                    new LocalSearch(jobs, doctors, dayJobDecider, shiftDecider, statistics), planMetrics);
+            presets = new Presets.Builder(PlanningState.JAHR).build();
+        }
+
+        private List<Doctor> doctors(List<Doctor> base) {
+            List<Doctor> doctors = new ArrayList<>();
+            for (int i = 0; i < doctorCount; i++) {
+                Doctor doctor = base.get(i % base.size());
+                doctors.add(new Doctor.Builder()
+                        .setName(i < base.size() ? doctor.getName() : doctor.getName() + i)
+                        .setVollzeit(doctor.isVollzeit())
+                        .setVerfugbareTage(doctor.getVerfugbareTage().toArray(new DayOfWeek[0]))
+                        .setVerfugbareTageDienst(doctor.getVerfugbareTageDienst().toArray(new DayOfWeek[0]))
+                        .setMaxDiensteImMonat(doctor.getMaxDiensteImMonat())
+                        .build());
+            }
+            return doctors;
+        }
+
+        private List<Job> jobs(List<Job> base) {
+            List<Job> jobs = new ArrayList<>(base);
+            for (int i = 1; i <= (doctorCount - base.size()) / 10; i++)
+                jobs.add(new Job.Builder()
+                        .setName("Ambulanz" + i)
+                        .setVerfugbareTage(DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY,
+                                DayOfWeek.THURSDAY, DayOfWeek.FRIDAY)
+                        .setOneDoctorPerWeek(true)
+                        .setMaxPerMonthPerDoctor(10)
+                        .setMaxDoctorsPerDay(1)
+                        .setDayJob(true)
+                        .build());
+            return jobs;
+        }
+    }
+
+    @Benchmark
+    public Dienstplan makePlan(LargeRoster state) {
+        return state.planBuilder.makePlan(state.presets, PlanningState.JAHR, PlanningState.QUARTIL,
+                PlanningState.SEED);
+    }
+}
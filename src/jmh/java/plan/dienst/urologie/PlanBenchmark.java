@@ -0,0 +1,43 @@
+package plan.dienst.urologie;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole planning steps. Every invocation starts from the same seed, so it does the same work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlanBenchmark {
+
+    // includes setting up the empty plan with the presets, which is small next to the shifts
+    @Benchmark
+    public Dienstplan scheduleShifts(PlanningState state) {
+        Dienstplan dienstplan = new Dienstplan(state.doctors.size(), state.jobs.size());
+        dienstplan.initDates(PlanningState.JAHR, PlanningState.QUARTIL);
+        dienstplan.getExplanations().init(dienstplan.getStartDate(), dienstplan.getEndDate(), state.jobs,
+                state.doctors);
+        for (Preset preset : state.presets.getPresets())
+            dienstplan.assignDoctors(preset.getDate(), state.jobs.getJob(preset.getJobName()),
+                    state.doctors.getDoctor(preset.getDocName()));
+        state.shiftOrganizer.scheduleShifts(dienstplan, PlanningState.JAHR, PlanningState.QUARTIL,
+                new SplittableRandom(PlanningState.SEED));
+        return dienstplan;
+    }
+
+    @Benchmark
+    public Dienstplan makePlan(PlanningState state) {
+        return state.planBuilder.makePlan(state.presets, PlanningState.JAHR, PlanningState.QUARTIL,
+                PlanningState.SEED);
+    }
+
+    @Benchmark
+    public double getScore(PlanningState state) {
+        return state.statistics.getScore(state.dienstplan, PlanningState.JAHR, PlanningState.QUARTIL);
+    }
+}
@@ -0,0 +1,100 @@
+package plan.dienst.urologie;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The components wired as Spring would from roster.json, the presets from UrologieApplication and a finished plan for Q1 2024.
+ * Everything random is seeded, so every fork measures the same plan and the same probes.
+ */
+@State(Scope.Benchmark)
+public class PlanningState {
+
+    public static final long SEED = 20240101L;
+    public static final int JAHR = 2024;
+    public static final int QUARTIL = 1;
+    private static final int PROBES = 1024;
+
+    Jobs jobs;
+    Doctors doctors;
+    DataFinder dataFinder;
+    DayJobDecider dayJobDecider;
+    ShiftDecider shiftDecider;
+    ShiftOrganizer shiftOrganizer;
+    Statistics statistics;
+    PlanMetrics planMetrics;
+    PlanBuilder planBuilder;
+    Presets presets;
+    Dienstplan dienstplan;
+
+    // what the decider benchmarks ask about, one (doctor, date, job) per probe
+    Doctor[] probeDoctors = new Doctor[PROBES];
+    LocalDate[] probeDates = new LocalDate[PROBES];
+    Job[] probeJobs = new Job[PROBES];
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Roster roster = new Roster(new ClassPathResource("roster.json"));
+        jobs = new Jobs(roster);
+        doctors = new Doctors(roster);
+        dataFinder = new DataFinder(jobs);
+        dayJobDecider = new DayJobDecider(jobs, doctors, dataFinder);
+        shiftDecider = new ShiftDecider(jobs, dataFinder);
+        planMetrics = new PlanMetrics(new SimpleMeterRegistry());
+        shiftOrganizer = new ShiftOrganizer(shiftDecider, doctors, jobs, dataFinder, planMetrics);
+        statistics = new Statistics(jobs, doctors, dataFinder);
+        planBuilder = new PlanBuilder(jobs, doctors, dataFinder, dayJobDecider, shiftDecider, shiftOrganizer,
+                statistics, new LocalSearch(jobs, doctors, dayJobDecider, shiftDecider, statistics), planMetrics);
+        presets = presets();
+        dienstplan = planBuilder.makePlan(presets, JAHR, QUARTIL, SEED);
+        Random random = new Random(SEED);
+        List<LocalDate> dates = dienstplan.getDates();
+        List<Job> dayJobs = List.of(jobs.getEaz(), jobs.getZna(), jobs.getStation(), jobs.getOp());
+        for (int i = 0; i < PROBES; i++) {
+            probeDoctors[i] = doctors.getAllDoctors().get(random.nextInt(doctors.getAllDoctors().size()));
+            probeDates[i] = dates.get(random.nextInt(dates.size()));
+            probeJobs[i] = dayJobs.get(random.nextInt(dayJobs.size()));
+        }
+    }
+
+    int nextProbe() {
+        probe = (probe + 1) % PROBES;
+        return probe;
+    }
+
+    // same as UrologieApplication.run
+    static Presets presets() {
+        return new Presets.Builder(JAHR)
+                .dienst("Sabine", 1, 6)
+                .dienst("Sabine",1, 6)
+                .dienst("Sabine",1,20)
+                .dienst("Sabine", 2, 17)
+                .dienst("Sabine",3,23)
+                .dienst("Sabine",2,24)
+                .dienst("Sebastian", 1, 13)
+                .dienst("Sebastian", 2, 3)
+                .dienst("Sebastian", 3,2)
+                .dienst("Nigel", 1, 1)
+
+                .urlaub("Dimi", 1, 2)
+                .urlaub("Nigel", 1, 13, 1, 28)
+                .urlaub("Christoph", 1, 22, 1, 26)
+                .urlaub("Christoph", 2, 9)
+                .urlaub("Paktis", 2,10,2,18)
+                .urlaub("Jette", 2,10,2,18)
+                .urlaub("Christoph",2,20)
+                .urlaub("Dimi", 2,24,3,12)
+                .urlaub("Christoph", 3,13,3,28)
+                .urlaub("Nigel",2,3,2,4)
+                .urlaub("Michal", 1, 13, 1, 21)
+                .urlaub("Timo", 3, 2, 3, 17)
+
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Set;
+
+/**
+ * A finished search in the PlanCache: where to resume it, how long it searched and its final plan. The plan is
+ * stored as (day, job, doctor) triples of ordinals, the day counted from the plan's start date.
+ */
+@Getter
+@Setter
+public class CachedPlan {
+
+    // stops that more time would not change
+    private static final Set<PlanSearch.StopReason> CONVERGED = Set.of(PlanSearch.StopReason.MAX_RESTARTS,
+            PlanSearch.StopReason.TARGET_SCORE, PlanSearch.StopReason.NO_IMPROVEMENT);
+
+    private String key;
+    private int year;
+    private int quarter;
+    private long runSeed;
+    private long nextRestart;
+    private long bestSeed;
+    private double searchScore; // score of the plan of bestSeed
+    private double score; // score of the final plan, after the local search
+    private long searchedMillis;
+    private PlanSearch.StopReason stopReason;
+    private int[] assignments = new int[0];
+
+    // true if a search with this time budget would not find anything better
+    public boolean covers(long timeBudgetMillis) {
+        return CONVERGED.contains(stopReason) || (timeBudgetMillis > 0 && searchedMillis >= timeBudgetMillis);
+    }
+
+    long getSizeInBytes() {
+        return 128 + key.length() * 2L + assignments.length * 4L;
+    }
+}
@@ -0,0 +1,54 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+/**
+ * What a quarter takes over from the quarters planned before it: the plan of the quarter before, whose last days
+ * the rules look back on (the Dienst of the day before, the last weekend, the doctor on a weekly job), and the
+ * Dienste and OPs of every doctor so far, so that the score balances them over the whole horizon and not quarter
+ * by quarter. Counters are indexed by Doctor id.
+ */
+public class Carryover {
+
+    @Getter
+    private final Dienstplan previous;
+    @Getter
+    private final int months; // quarters planned before, in months
+    private final int[] dienste;
+    private final int[] ops;
+
+    private Carryover(Dienstplan previous, int months, int[] dienste, int[] ops) {
+        this.previous = previous;
+        this.months = months;
+        this.dienste = dienste;
+        this.ops = ops;
+    }
+
+    /**
+     * Counts the Dienste and OPs of the planned quarter up to the day the next quarter starts, the Monday before
+     * its first day. The days from there on are planned again by the next quarter and counted with it.
+     * @param before what the planned quarter took over itself, null for the first quarter
+     * @return what the quarter after the planned one takes over
+     */
+    public static Carryover after(Dienstplan planned, LocalDate nextStart, Carryover before, Doctors doctors, Jobs jobs) {
+        int[] dienste = before == null ? new int[doctors.size()] : before.dienste.clone();
+        int[] ops = before == null ? new int[doctors.size()] : before.ops.clone();
+        for (LocalDate date = planned.getStartDate(); date.isBefore(nextStart); date = date.plusDays(1)) {
+            for (Doctor doctor : doctors.getAllDoctors()) {
+                if (planned.isDoctorWorking(date, jobs.getDienst(), doctor)) dienste[doctor.getId()]++;
+                if (planned.isDoctorWorking(date, jobs.getOp(), doctor)) ops[doctor.getId()]++;
+            }
+        }
+        return new Carryover(planned, (before == null ? 0 : before.months) + 3, dienste, ops);
+    }
+
+    public int getDienste(Doctor doctor) {
+        return dienste[doctor.getId()];
+    }
+
+    public int getOps(Doctor doctor) {
+        return ops[doctor.getId()];
+    }
+}
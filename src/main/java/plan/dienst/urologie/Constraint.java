@@ -0,0 +1,13 @@
+package plan.dienst.urologie;
+
+import java.time.LocalDate;
+
+/**
+ * One rule a doctor has to satisfy to be given a job on a day.
+ */
+@FunctionalInterface
+public interface Constraint {
+
+    boolean rejects(Dienstplan dienstplan, Doctor doctor, LocalDate date, Job job);
+
+}
@@ -0,0 +1,118 @@
+package plan.dienst.urologie;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Evaluates rules one at a time and stops at the first one that rejects the doctor, so the expensive rules
+ * (month and week scans) only run when all cheaper rules have passed. Every rule is a pure check of the plan,
+ * so the order changes which rejection is reported, never whether the doctor can work.
+ */
+public class ConstraintChain<R extends Enum<R>> {
+
+    private final Class<R> ruleType;
+    private final Map<R, Constraint> constraints;
+    private R[] order;
+    private Constraint[] ordered;
+    private volatile RejectionProfile<R> profile; // null unless the rules are profiled
+    private volatile int eventSampleEvery; // 0 for no RuleEvaluation events
+
+    public ConstraintChain(Class<R> ruleType) {
+        this.ruleType = ruleType;
+        this.constraints = new EnumMap<>(ruleType);
+        this.order = ruleType.getEnumConstants();
+    }
+
+    public ConstraintChain<R> add(R rule, Constraint constraint) {
+        constraints.put(rule, constraint);
+        setOrder(order);
+        return this;
+    }
+
+    /**
+     * Rules not in the list are evaluated last, in declaration order.
+     */
+    @SafeVarargs
+    public final void setOrder(R... rules) {
+        // copied rule by rule: handing the array on to another varargs method is what javac warns about
+        List<R> newOrder = new ArrayList<>();
+        for (R rule : rules) newOrder.add(rule);
+        for (R rule : ruleType.getEnumConstants()) if (!newOrder.contains(rule)) newOrder.add(rule);
+        newOrder.removeIf(rule -> !constraints.containsKey(rule));
+        order = newOrder.toArray(Arrays.copyOf(ruleType.getEnumConstants(), 0));
+        ordered = newOrder.stream().map(constraints::get).toArray(Constraint[]::new);
+    }
+
+    public List<R> getOrder() {
+        return List.of(order);
+    }
+
+    /**
+     * Starts counting the rejections of firstRejection in a new profile.
+     */
+    public RejectionProfile<R> profile(int sampleEvery, Doctors doctors, Jobs jobs) {
+        profile = new RejectionProfile<>(ruleType, sampleEvery, doctors.getAllDoctors(), jobs.getJobsById());
+        return profile;
+    }
+
+    public RejectionProfile<R> getProfile() {
+        return profile;
+    }
+
+    /**
+     * Sends every sampleEvery-th call of firstRejection, on average, to JFR as a RuleEvaluation event. 0 stops it.
+     */
+    public void sampleEvents(int sampleEvery) {
+        eventSampleEvery = sampleEvery;
+    }
+
+    /**
+     * @return the first rule that rejects the doctor, or null if the doctor can work
+     */
+    public R firstRejection(Dienstplan dienstplan, Doctor doctor, LocalDate date, Job job) {
+        RejectionProfile<R> profile = this.profile;
+        if (profile != null) return profile.firstRejection(order, ordered, dienstplan, doctor, date, job);
+        int sampleEvery = eventSampleEvery;
+        if (sampleEvery > 0 && ThreadLocalRandom.current().nextInt(sampleEvery) == 0)
+            return firstRejectionEvent(dienstplan, doctor, date, job);
+        for (int i = 0; i < ordered.length; i++) {
+            if (ordered[i].rejects(dienstplan, doctor, date, job)) return order[i];
+        }
+        return null;
+    }
+
+    private R firstRejectionEvent(Dienstplan dienstplan, Doctor doctor, LocalDate date, Job job) {
+        PlannerEvents.RuleEvaluation event = new PlannerEvents.RuleEvaluation();
+        event.begin();
+        R rejection = null;
+        for (int i = 0; i < ordered.length && rejection == null; i++) {
+            if (ordered[i].rejects(dienstplan, doctor, date, job)) rejection = order[i];
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.rules = ruleType.getSimpleName();
+            event.rejection = rejection == null ? null : rejection.name();
+            event.doctor = doctor.getName();
+            event.job = job.getName();
+            event.date = date.toString();
+            event.commit();
+        }
+        return rejection;
+    }
+
+    /**
+     * @return every rule that rejects the doctor, as a bitmask of rule ordinals
+     */
+    public int allRejections(Dienstplan dienstplan, Doctor doctor, LocalDate date, Job job) {
+        int rejections = 0;
+        for (int i = 0; i < ordered.length; i++) {
+            if (ordered[i].rejects(dienstplan, doctor, date, job)) rejections |= 1 << order[i].ordinal();
+        }
+        return rejections;
+    }
+}
@@ -8,6 +8,9 @@ import java.util.*;
 
 @Component
 public class DataFinder {
+    private static final int ALL_DAYS = (1 << 7) - 1;
+    private static final int WEEKEND = 1 << DayOfWeek.SATURDAY.ordinal() | 1 << DayOfWeek.SUNDAY.ordinal();
+
     private final Jobs jobs;
 
     public DataFinder(Jobs jobs) {
@@ -38,35 +41,51 @@ public class DataFinder {
 
     // can calculate weekend shifts, for example
     public int getTimesDoctorScheduledThisMonth(Dienstplan dienstplan, LocalDate date, Doctor doctor, Job job, DayOfWeek... daysToUse) {
+        int days = 0;
+        for (DayOfWeek day : daysToUse) days |= 1 << day.ordinal();
+        // the whole week and the weekend are counted by the Dienstplan as jobs are assigned
+        if (days == ALL_DAYS) return dienstplan.getTimesScheduledInMonth(date, doctor, job);
+        if (days == WEEKEND) return dienstplan.getTimesScheduledOnWeekendsInMonth(date, doctor, job);
         int didJob = 0;
-        int month = date.getMonthValue();
-        int year = date.getYear();
-        LocalDate startDate = LocalDate.of(year, month, 1);
-        int year2 = month == 12 ? year + 1 : year;
-        int month2 = month == 12 ? 1 : month + 1;
-        LocalDate endDate = LocalDate.of(year2, month2, 1).minusDays(1);
+        LocalDate startDate = date.withDayOfMonth(1);
+        LocalDate endDate = startDate.plusMonths(1).minusDays(1);
         for (LocalDate d = startDate; !d.isAfter(endDate); d = d.plusDays(1)) {
-            if (List.of(daysToUse).contains(d.getDayOfWeek())) {
+            if ((days & 1 << d.getDayOfWeek().ordinal()) != 0) {
                 if (dienstplan.isDoctorWorking(d, job, doctor)) didJob++;
             }
         }
         return didJob;
     }
 
+    /*
+    Sorts the list in place. The sort is stable, so doctors with the same count keep the order left by the
+    previous sort; pass the plan's own doctor order (Dienstplan.getDoctorOrder), never the shared roster.
+     */
     public List<Doctor> sortByScheduledJobsThisMonth(Dienstplan dienstplan, LocalDate date, List<Doctor> doctors, Job job) {
-        doctors.forEach(doc -> doc.setCalc(getTimesDoctorScheduledThisMonth(dienstplan, date, doc, job)));
-        doctors.sort(Comparator.comparingDouble(Doctor::getCalc));
+        // times scheduled in the high bits and the position in the low ones: a primitive sort that is stable
+        long[] keys = new long[doctors.size()];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = (long) getTimesDoctorScheduledThisMonth(dienstplan, date, doctors.get(i), job) << 32 | i;
+        Arrays.sort(keys);
+        Doctor[] sorted = doctors.toArray(new Doctor[0]);
+        for (int i = 0; i < keys.length; i++) doctors.set(i, sorted[(int) keys[i]]);
         return doctors;
     }
 
     public List<Doctor> sortDoctorsByShiftAvailability(Dienstplan dienstplan, int year, int month, List<Doctor> doctors) {
         LocalDate startDate = LocalDate.of(year, month, 1);
-        doctors.forEach(doc -> {
+        // most shifts left first, as a stable sort on the negated count
+        long[] keys = new long[doctors.size()];
+        for (int i = 0; i < keys.length; i++) {
+            Doctor doc = doctors.get(i);
             int maxShifts = Math.min(doc.getMaxDiensteImMonat(), jobs.getDienst().getMaxPerMonthPerDoctor());
-            doc.setCalc(maxShifts - getTimesDoctorScheduledThisMonth(dienstplan, startDate, doc, jobs.getDienst()));
-        });
-        doctors.sort(Comparator.comparingDouble(Doctor::getCalc).reversed());
-        return doctors;
+            int shiftsLeft = maxShifts - getTimesDoctorScheduledThisMonth(dienstplan, startDate, doc, jobs.getDienst());
+            keys[i] = (long) -shiftsLeft << 32 | i;
+        }
+        Arrays.sort(keys);
+        List<Doctor> sorted = new ArrayList<>(keys.length);
+        for (long key : keys) sorted.add(doctors.get((int) key));
+        return sorted;
     }
 
     public int getAvailableJobsLeftThisMonth(Dienstplan dienstplan, LocalDate date, Doctor doctor, Job job) {
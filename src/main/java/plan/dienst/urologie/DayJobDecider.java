@@ -1,113 +1,80 @@
 package plan.dienst.urologie;
 
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.List;
 
+import static plan.dienst.urologie.DayJobRule.*;
+
 @Component
 public class DayJobDecider {
     private final Jobs jobs;
     private final Doctors doctors;
     private final DataFinder dataFinder;
-    private final Explanations explanations;
 
-    public DayJobDecider(Jobs jobs, Doctors doctors, DataFinder dataFinder, Explanations explanations) {
+    /*
+    Cheap checks of the day and of single bits come first, checks that scan the week come last.
+    Set the order to DayJobRule.values() to report rejections in the order the rules were written, or
+    planner.rules.day-job-order to the suggested order of a rejection profile.
+     */
+    @Getter
+    private final ConstraintChain<DayJobRule> rules = new ConstraintChain<>(DayJobRule.class);
+
+    public DayJobDecider(Jobs jobs, Doctors doctors, DataFinder dataFinder) {
+        this(jobs, doctors, dataFinder, List.of());
+    }
+
+    /**
+     * @param order the rules evaluated first, in this order; empty for the order below
+     */
+    @Autowired
+    public DayJobDecider(Jobs jobs, Doctors doctors, DataFinder dataFinder,
+                         @Value("${planner.rules.day-job-order:}") List<DayJobRule> order) {
         this.jobs = jobs;
         this.doctors = doctors;
         this.dataFinder = dataFinder;
-        this.explanations = explanations;
+        rules.add(JOB_NOT_DONE_TODAY, (dienstplan, doctor, date, job) -> !isJobDoneThisDay(date, job))
+                .add(JOB_FULL, (dienstplan, doctor, date, job) -> isJobFull(dienstplan, date, job))
+                .add(NEEDS_PART_TIME, (dienstplan, doctor, date, job) ->
+                        doctor.isVollzeit() && isNeedsPartTime(dienstplan, date, job))
+                .add(ON_VACATION, (dienstplan, doctor, date, job) ->
+                        dienstplan.isDoctorWorking(date, jobs.getUrlaub(), doctor))
+                .add(WORKING_OTHER_JOB, (dienstplan, doctor, date, job) -> isWorkingAnotherJob(dienstplan, date, doctor))
+                // part-time doctors can share EAZ, ZNA, or Station and don't need to work every day of the week.
+                .add(SAME_DOC_ALL_WEEK, (dienstplan, doctor, date, job) ->
+                        shouldBeSameDoctorAllWeek(job) && isJobDoneDayBefore(date, job)
+                                && doctor.isVollzeit() && !isWorkingDayBefore(dienstplan, doctor, date, job))
+                .add(WORKED_JOB_TOO_MUCH, (dienstplan, doctor, date, job) ->
+                        workedThisJobTooMuchThisMonth(dienstplan, date, job, doctor))
+                .add(NOT_AVAILABLE_THIS_DAY, (dienstplan, doctor, date, job) -> !isAvailableThisDay(date, doctor))
+                .add(SHIFT_OR_VACATION_THIS_WEEK, (dienstplan, doctor, date, job) ->
+                        job != jobs.getOp() && doctor.isVollzeit()
+                                && (isDoingJobThisWeek(dienstplan, date, doctor, jobs.getUrlaub())
+                                || isDoingJobThisWeek(dienstplan, date, doctor, jobs.getDienst())))
+                .add(SHIFT_DAY_BEFORE, (dienstplan, doctor, date, job) -> isDoingShiftDayBefore(dienstplan, date, doctor))
+                .add(NO_PART_TIME_THIS_WEEK, (dienstplan, doctor, date, job) ->
+                        job != jobs.getOp() && !doctor.isVollzeit()
+                                && !atLeastOnePartTimeAvailableEveryDayThisWeek(dienstplan, date))
+                .add(OTHER_WEEKLY_JOB, (dienstplan, doctor, date, job) ->
+                        isDoingOtherWeeklyJobDayBefore(dienstplan, doctor, date, job))
+                .add(DIFFERENT_FULL_TIME_DOC, (dienstplan, doctor, date, job) ->
+                        job != jobs.getOp() && isDocOnThisJobDayBeforeIsDifferentAndFullTime(dienstplan, doctor, date, job));
+        rules.setOrder(JOB_NOT_DONE_TODAY, NOT_AVAILABLE_THIS_DAY, ON_VACATION, WORKING_OTHER_JOB, SHIFT_DAY_BEFORE,
+                JOB_FULL, NEEDS_PART_TIME, SAME_DOC_ALL_WEEK, DIFFERENT_FULL_TIME_DOC, OTHER_WEEKLY_JOB,
+                WORKED_JOB_TOO_MUCH, SHIFT_OR_VACATION_THIS_WEEK, NO_PART_TIME_THIS_WEEK);
+        if (!order.isEmpty()) rules.setOrder(order.toArray(new DayJobRule[0]));
     }
 
     public boolean canWork(Dienstplan dienstplan, Doctor doctor, LocalDate date, Job job) {
-        boolean shiftFull = isJobFull(dienstplan, date, job);
-        boolean needsPartTime = isNeedsPartTime(dienstplan, date, job);
-        boolean docWorkingOtherJob = isWorkingAnotherJob(dienstplan, date, doctor);
-        boolean jobDoneThisDay = isJobDoneThisDay(date, job);
-        boolean workingDayBefore = isWorkingDayBefore(dienstplan, doctor, date, job);
-        boolean needSameDocAllWeek = shouldBeSameDoctorAllWeek(job);
-        boolean jobDoneDayBefore = isJobDoneDayBefore(date, job);
-        boolean workedJobTooMuch = workedThisJobTooMuchThisMonth(dienstplan, date, job, doctor);
-        boolean availableThisDay = isAvailableThisDay(date, doctor);
-        boolean vacationThisWeek = isDoingJobThisWeek(dienstplan, date, doctor, jobs.getUrlaub());
-        boolean vacationToday = dienstplan.getAssignedDoctors(date, jobs.getUrlaub()).contains(doctor);
-        boolean jobOP = job == jobs.getOp();
-        boolean doingShiftThisWeek = isDoingJobThisWeek(dienstplan, date, doctor, jobs.getDienst());
-        boolean doesShiftDayBefore = isDoingShiftDayBefore(dienstplan, date, doctor);
-        boolean partTimeDoc = !doctor.isVollzeit();
-        boolean onePartTimeAvailableEveryDayThisWeek = atLeastOnePartTimeAvailableEveryDayThisWeek(dienstplan, date);
-        boolean docHasThisDayAvailableForShifts = isShiftOK(doctor, date); // Doctors shouldn't work OP when they can't do a shift. On the other hand, some doctors are unavailable to work shifts on certain days but available for day jobs.
-        boolean didAnotherWeeklyJobDayBefore = isDoingOtherWeeklyJobDayBefore(dienstplan, doctor, date, job);
-        boolean docOnThisJobDayBeforeIsDifferentAndFullTime = isDocOnThisJobDayBeforeIsDifferentAndFullTime(dienstplan, doctor, date, job);
-
-        if (!jobDoneThisDay) {
-            explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "This job isn't done today.");
-            return false;
-        }
-        if (shiftFull) {
-            explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "Job is full (has enough doctors).");
-            return false;
-        }
-        if (needsPartTime && doctor.isVollzeit()) {
-            explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "Requires a part-time doctor.");
-            return false;
-        }
-        if (docWorkingOtherJob) {
-            if (vacationToday) explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "Doc is on vacation.");
-            else explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "Doc is working a different job today.");
-            return false;
-        }
-        if (needSameDocAllWeek && jobDoneDayBefore && (!workingDayBefore && doctor.isVollzeit())) { // part-time doctors can share EAZ, ZNA, or Station and don't need to work every day of the week.
-            explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "Job requires the same doc every day this week.");
-            return false;
-        }
-        if (workedJobTooMuch) {
-            explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "Doc has worked this job too much this month.");
-            return false;
-        }
-        if (!availableThisDay) {
-            explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "Doc isn't available for this job this day of the week.");
-            return false;
-        }
-        if ((vacationThisWeek || doingShiftThisWeek) && !jobOP && !partTimeDoc) {
-            explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "This job requires the same doc all week and this doc is working a shift or has vacation this week.");
-            return false;
-        }
-        if (doesShiftDayBefore) {
-            explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "Doc did a shift yesterday.");
-            return false;
-        }
-        if (!jobOP && partTimeDoc && !onePartTimeAvailableEveryDayThisWeek) {
-            explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "No part-time doctors are available at least 1 day this week.");
-            return false;
-        }
-        //if (jobOP && !docHasThisDayAvailableForShifts) {
-        //    explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(), "Doc can't work shift today.");
-        //    return false;
-        //}
-        if (didAnotherWeeklyJobDayBefore) {
-            explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "Doc doing a different weekly job this week.");
-            return false;
-        }
-        if (docOnThisJobDayBeforeIsDifferentAndFullTime && !jobOP) {
-            explanations.addExplanation(date, job.getJobEnum(), doctor.getDocEnum(),
-                    "Different and full-time doctor on this weekly job already.");
-            return false;
-        }
-        return true;
+        DayJobRule rejection = rules.firstRejection(dienstplan, doctor, date, job);
+        if (rejection == null) return true;
+        dienstplan.getExplanations().addExplanation(date, job, doctor, rejection);
+        return false;
     }
 
     private boolean isDocOnThisJobDayBeforeIsDifferentAndFullTime(Dienstplan dienstplan, Doctor doctor, LocalDate date, Job job) {
@@ -118,25 +85,20 @@ public class DayJobDecider {
 
     private boolean isDoingOtherWeeklyJobDayBefore(Dienstplan dienstplan, Doctor doctor, LocalDate date, Job job) {
         List<Job> otherWeeklyJobs = jobs.getAllJobs().stream().filter(j -> job.isOneDoctorPerWeek() && j != job).toList();
-        for (Job j : otherWeeklyJobs) if (dienstplan.getAssignedDoctors(date, j).contains(doctor)) return true;
+        for (Job j : otherWeeklyJobs) if (dienstplan.isDoctorWorking(date, j, doctor)) return true;
         return false;
     }
 
-    private boolean isShiftOK(Doctor doctor, LocalDate date) {
-        return doctor.getVerfugbareTageDienst().contains(date.getDayOfWeek());
-    }
-
     private boolean atLeastOnePartTimeAvailableEveryDayThisWeek(Dienstplan dienstplan, LocalDate date) {
         LocalDate monday = Dates.getNearestPreviousMondayTo(date);
         LocalDate friday = Dates.getNearestNextDayTo(date, DayOfWeek.FRIDAY);
         List<Doctor> partTimers = doctors.getAllDoctors().stream().filter(doctor -> !doctor.isVollzeit()).toList();
         for (LocalDate d = monday; !d.isAfter(friday); d = d.plusDays(1)) {
             int available = 0;
-            List<Doctor> notAvailable = dienstplan.getAssignedDoctors(d, jobs.getDienst(), jobs.getUrlaub());
             for (Doctor doctor : partTimers) {
                 if (doctor.getVerfugbareTage().contains(d.getDayOfWeek())
-                        && !notAvailable.contains(doctor)
-                        && !dienstplan.getAssignedDoctors(d.minusDays(1), jobs.getDienst()).contains(doctor))
+                        && !dienstplan.isDoctorWorkingAny(d, doctor, jobs.getDienst(), jobs.getUrlaub())
+                        && !dienstplan.isDoctorWorking(d.minusDays(1), jobs.getDienst(), doctor))
                     available++;
             }
             if (available == 0) return false;
@@ -146,7 +108,7 @@ public class DayJobDecider {
 
     private boolean isDoingShiftDayBefore(Dienstplan dienstplan, LocalDate date, Doctor doctor) {
         LocalDate dayBefore = date.minusDays(1);
-        return dienstplan.getAssignedDoctors(dayBefore, jobs.getDienst()).contains(doctor);
+        return dienstplan.isDoctorWorking(dayBefore, jobs.getDienst(), doctor);
     }
 
     private boolean isJobFull(Dienstplan dienstplan, LocalDate date, Job job) {
@@ -172,10 +134,7 @@ public class DayJobDecider {
     }
 
     private boolean isWorkingAnotherJob(Dienstplan dienstplan, LocalDate date, Doctor doctor) {
-        for (Job job : jobs.getDayJobs()) {
-            if (dienstplan.getAssignedDoctors(date, job).contains(doctor)) return true;
-        }
-        return false;
+        return dienstplan.isDoctorWorkingAny(date, doctor, jobs.getDayJobs());
     }
 
     private boolean isJobDoneThisDay(LocalDate date, Job job) {
@@ -183,7 +142,7 @@ public class DayJobDecider {
     }
 
     private boolean isWorkingDayBefore(Dienstplan dienstplan, Doctor doctor, LocalDate date, Job job) {
-        return dataFinder.getDoctorsDayBefore(dienstplan, date, 1, job).contains(doctor);
+        return dienstplan.isDoctorWorking(date.minusDays(1), job, doctor);
     }
 
     private boolean shouldBeSameDoctorAllWeek(Job job) {
@@ -207,7 +166,7 @@ public class DayJobDecider {
         LocalDate monday = Dates.getNearestPreviousMondayTo(date);
         LocalDate friday = Dates.getNearestNextDayTo(date, DayOfWeek.FRIDAY);
         for (LocalDate d = monday; !d.isAfter(friday); d = d.plusDays(1)) {
-            if (dienstplan.getAssignedDoctors(d, job).contains(doctor)) return true;
+            if (dienstplan.isDoctorWorking(d, job, doctor)) return true;
         }
         return false;
     }
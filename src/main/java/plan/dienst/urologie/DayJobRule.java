@@ -0,0 +1,50 @@
+package plan.dienst.urologie;
+
+import java.util.Locale;
+
+/**
+ * The rules checked by DayJobDecider, in the order they were originally written.
+ * The ordinal is the bit in Explanations, so new rules go at the end.
+ */
+public enum DayJobRule implements ReasonCode {
+
+    JOB_NOT_DONE_TODAY("This job isn't done today.",
+            "Diese Aufgabe gibt es heute nicht."),
+    JOB_FULL("Job is full (has enough doctors).",
+            "Die Aufgabe ist voll besetzt."),
+    NEEDS_PART_TIME("Requires a part-time doctor.",
+            "Hier wird ein Teilzeitarzt gebraucht."),
+    ON_VACATION("Doc is on vacation.",
+            "Arzt hat Urlaub."),
+    WORKING_OTHER_JOB("Doc is working a different job today.",
+            "Arzt hat heute eine andere Aufgabe."),
+    SAME_DOC_ALL_WEEK("Job requires the same doc every day this week.",
+            "Die Aufgabe braucht die ganze Woche denselben Arzt."),
+    WORKED_JOB_TOO_MUCH("Doc has worked this job too much this month.",
+            "Arzt hatte diese Aufgabe diesen Monat schon zu oft."),
+    NOT_AVAILABLE_THIS_DAY("Doc isn't available for this job this day of the week.",
+            "Arzt ist an diesem Wochentag nicht verfügbar."),
+    SHIFT_OR_VACATION_THIS_WEEK("This job requires the same doc all week and this doc is working a shift or has vacation this week.",
+            "Die Aufgabe braucht die ganze Woche denselben Arzt und der Arzt hat diese Woche Dienst oder Urlaub."),
+    SHIFT_DAY_BEFORE("Doc did a shift yesterday.",
+            "Arzt hatte gestern Dienst."),
+    NO_PART_TIME_THIS_WEEK("No part-time doctors are available at least 1 day this week.",
+            "Diese Woche ist nicht an jedem Tag ein Teilzeitarzt verfügbar."),
+    OTHER_WEEKLY_JOB("Doc doing a different weekly job this week.",
+            "Arzt hat diese Woche eine andere Wochenaufgabe."),
+    DIFFERENT_FULL_TIME_DOC("Different and full-time doctor on this weekly job already.",
+            "Ein anderer Vollzeitarzt hat diese Wochenaufgabe schon.");
+
+    private final String english;
+    private final String german;
+
+    DayJobRule(String english, String german) {
+        this.english = english;
+        this.german = german;
+    }
+
+    @Override
+    public String getText(Locale locale) {
+        return locale.getLanguage().equals(Locale.GERMAN.getLanguage()) ? german : english;
+    }
+}
@@ -2,46 +2,123 @@ package plan.dienst.urologie;
 
 import lombok.Getter;
 import lombok.Setter;
-import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
 import java.util.*;
 
-@Getter
-@Setter
+/**
+ * The schedule is stored densely: one doctor bitmask per (day, job), where the day is counted from the first
+ * stored date, the job is the Job id and the bits are Doctor ids. Checking whether a doctor does a job on a day is a single
+ * bit test, and copying or clearing a plan is an array copy.
+ */
 public class Dienstplan {
 
-    private Map<LocalDate, DailyPlan> schedule = new HashMap<>();
+    private final int doctorCount;
+    private final int jobCount;
+    private final int words; // longs per doctor bitmask
+    private static final int HISTORY_DAYS = 14; // the rules look back 8 days at most
+
+    @Getter @Setter
     private LocalDate startDate;
+    @Getter @Setter
     private LocalDate endDate;
+    @Getter @Setter
     private double score;
+    @Getter @Setter
+    private Explanations explanations = new Explanations();
+    @Getter @Setter
+    private List<Doctor> doctorOrder = new ArrayList<>(); // working order of the doctors, re-sorted while the plan is built
+    @Getter
+    private Carryover carryover; // null unless the plan follows the quarter before
+
+    private long firstDay; // epoch day of day index 0
+    private boolean[] planned = new boolean[0]; // days that belong to the plan
+    private long[] assigned = new long[0]; // [day][job][word]
+    private final Doctor[] doctorsByIndex;
+    private final Job[] jobsById; // the jobs seen by assignDoctors, for rollbackTo
+    private final List<DienstplanListener> listeners = new ArrayList<>(); // not copied
+
+    /*
+    Days worked per month, doctor and job, kept up to date by assignDoctors so that monthly limits can be
+    checked without scanning the month. Indexed by [month - firstCountedMonth][doctor][job].
+     */
+    private int firstCountedMonth;
+    private int[] timesScheduled = new int[0];
+    private int[] timesScheduledOnWeekends = new int[0];
+
+    /*
+    The changes since mark, undone in reverse by rollbackTo. An entry is the epoch day in the high 32 bits, then the
+    job, the doctor, whether it was a removal and whether the day became planned with it.
+     */
+    private long[] journal = new long[0];
+    private int journalSize;
+    private boolean journaling;
+
+    /**
+     * @param doctorCount the number of doctors, Doctors.size()
+     * @param jobCount the number of jobs, Jobs.size()
+     */
+    public Dienstplan(int doctorCount, int jobCount) {
+        this.doctorCount = doctorCount;
+        this.jobCount = jobCount;
+        words = (doctorCount + 63) / 64;
+        doctorsByIndex = new Doctor[doctorCount];
+        jobsById = new Job[jobCount];
+    }
 
     public void initDates(int jahr, int quartil) {
         startDate = Dates.getStartDate(jahr, quartil);
         endDate = Dates.getEndDate(jahr, quartil);
+        ensureDay(startDate);
+        ensureDay(endDate.plusDays(7)); // room for the last week's shifts
         // Iterate over the range of dates
         for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-            LocalDate finalDate = date;
-            schedule.computeIfAbsent(date, k -> new DailyPlan(finalDate));
+            planned[ensureDay(date)] = true;
+        }
+    }
+
+    /**
+     * Plans the quarter after the previous plan of the carryover. Like the previous plan, it starts on the Monday
+     * before the first day of the quarter, so that the weekly jobs of that week are planned together. The days
+     * before, from the start of the month two weeks earlier, are copied in from the previous plan as history: the
+     * rules and the monthly counts see them, but they are not part of the plan.
+     */
+    public void initDates(int jahr, int quartil, Carryover carryover) {
+        this.carryover = carryover;
+        Dienstplan previous = carryover.getPrevious();
+        if (!previous.getEndDate().plusDays(1).equals(LocalDate.of(jahr, quartil * 3 - 2, 1)))
+            throw new IllegalArgumentException("Quarter " + quartil + "/" + jahr + " does not follow the plan up to "
+                    + previous.getEndDate());
+        startDate = Dates.getStartDate(jahr, quartil);
+        endDate = Dates.getEndDate(jahr, quartil);
+        LocalDate history = startDate.minusDays(HISTORY_DAYS).withDayOfMonth(1);
+        for (LocalDate date = history; date.isBefore(startDate); date = date.plusDays(1))
+            copyDay(previous, date);
+        ensureDay(endDate.plusDays(7));
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            planned[ensureDay(date)] = true;
         }
     }
 
     public List<LocalDate> getDates() {
         List<LocalDate> dates = new ArrayList<>();
-        for (Map.Entry<LocalDate, DailyPlan> entry : getSortedEntries()) {
-            LocalDate date = entry.getKey();
-            dates.add(date);
+        for (int day = 0; day < planned.length; day++) {
+            if (planned[day]) dates.add(LocalDate.ofEpochDay(firstDay + day));
         }
         return dates;
     }
 
     public boolean isValidDate(LocalDate date) {
-        return schedule.containsKey(date);
+        int day = dayIndex(date);
+        return day >= 0 && planned[day];
     }
 
     public boolean isAssigned(LocalDate date, Job job) {
-        if (!isValidDate(date)) return false;
-        return schedule.get(date).hasJob(job);
+        int day = dayIndex(date);
+        if (day < 0) return false;
+        int cell = cell(day, job);
+        for (int w = 0; w < words; w++) if (assigned[cell + w] != 0) return true;
+        return false;
     }
 
     public boolean areAllAssignedInMonth(LocalDate date, Job job) {
@@ -55,58 +132,318 @@ public class Dienstplan {
     }
 
     public List<Doctor> ifAssignedGetDoctors(LocalDate date, Job job) {
-        if (!isAssigned(date, job)) return new ArrayList<>();
-        return schedule.get(date).getDoctors(job);
+        return getAssignedDoctors(date, job);
     }
 
     public boolean isDoctorWorking(LocalDate date, Job job, Doctor doctor) {
-        return getAssignedDoctors(date, job).contains(doctor);
+        int day = dayIndex(date);
+        if (day < 0) return false;
+        int index = doctorIndex(doctor);
+        return (assigned[cell(day, job) + (index >>> 6)] & 1L << index) != 0;
+    }
+
+    public boolean isDoctorWorkingAny(LocalDate date, Doctor doctor, Job... jobs) {
+        return isDoctorWorkingAny(date, doctor, Arrays.asList(jobs));
+    }
+
+    // one day index and doctor bit for all the jobs, which matters with many jobs
+    public boolean isDoctorWorkingAny(LocalDate date, Doctor doctor, List<Job> jobs) {
+        int day = dayIndex(date);
+        if (day < 0) return false;
+        int index = doctorIndex(doctor);
+        int word = index >>> 6;
+        long bit = 1L << index;
+        for (int i = 0; i < jobs.size(); i++) if ((assigned[cell(day, jobs.get(i)) + word] & bit) != 0) return true;
+        return false;
     }
 
     public void assignDoctors(LocalDate date, Job job, Doctor... doctors) {
-        // If the date is not in the schedule, create a new map
-        schedule.computeIfAbsent(date, k -> new DailyPlan(date));
-        // Assign the doctor to the shift for the given date
-        schedule.get(date).addDoctors(job, doctors);
-        //System.out.print(date + " " + job.getJobEnum());
+        // If the date is not in the schedule, add it
+        int day = ensureDay(date);
+        boolean newlyPlanned = !planned[day];
+        planned[day] = true;
+        int cell = cell(day, job);
+        for (Doctor doctor : doctors) {
+            int index = doctorIndex(doctor);
+            if ((assigned[cell + (index >>> 6)] & 1L << index) != 0) continue; // already assigned
+            doctorsByIndex[index] = doctor;
+            add(date, cell, job, index);
+            record(date, job, index, false, newlyPlanned);
+            newlyPlanned = false;
+        }
+        //System.out.print(date + " " + job.getName());
         //for (Doctor doctor : doctors) System.out.print(" " + doctor.getName()); System.out.println();
     }
 
+    public void removeDoctor(LocalDate date, Job job, Doctor doctor) {
+        int day = dayIndex(date);
+        if (day < 0) return;
+        int index = doctorIndex(doctor);
+        int cell = cell(day, job);
+        if ((assigned[cell + (index >>> 6)] & 1L << index) == 0) return; // not assigned
+        remove(date, cell, job, index);
+        record(date, job, index, true, false);
+    }
+
+    /**
+     * Starts recording the changes, if it isn't already, so that they can be undone with rollbackTo. Marks nest:
+     * rolling back to an outer mark undoes the changes after the inner ones too.
+     * @return the position to roll back to
+     */
+    public int mark() {
+        journaling = true;
+        return journalSize;
+    }
+
+    /**
+     * Undoes the assignments and removals since the mark, the last one first. The counters and the listeners see
+     * each one undone, so a ScoreTracker stays up to date. Each change costs O(1) to undo.
+     */
+    public void rollbackTo(int mark) {
+        while (journalSize > mark) {
+            long entry = journal[--journalSize];
+            LocalDate date = LocalDate.ofEpochDay(entry >> 32);
+            int job = (int) (entry >>> 18) & 0x3FFF;
+            int index = (int) (entry >>> 2) & 0xFFFF;
+            int day = dayIndex(date);
+            Job j = jobsById[job];
+            if ((entry & 2) != 0) add(date, cell(day, job), j, index);
+            else remove(date, cell(day, job), j, index);
+            if ((entry & 1) != 0) planned[day] = false;
+        }
+    }
+
+    // keeps the changes since the first mark and stops recording them
+    public void commit() {
+        journalSize = 0;
+        journaling = false;
+    }
+
+    private void add(LocalDate date, int cell, Job job, int index) {
+        assigned[cell + (index >>> 6)] |= 1L << index;
+        countAssignment(date, job.getId(), index);
+        jobsById[job.getId()] = job;
+        Doctor doctor = doctorsByIndex[index];
+        for (int i = 0; i < listeners.size(); i++) listeners.get(i).assigned(date, job, doctor);
+    }
+
+    private void remove(LocalDate date, int cell, Job job, int index) {
+        assigned[cell + (index >>> 6)] &= ~(1L << index);
+        int counter = counterIndex(date, index, job.getId());
+        timesScheduled[counter]--;
+        if (Dates.isWeekend(date)) timesScheduledOnWeekends[counter]--;
+        Doctor doctor = doctorsByIndex[index];
+        for (int i = 0; i < listeners.size(); i++) listeners.get(i).removed(date, job, doctor);
+    }
+
+    private void record(LocalDate date, Job job, int index, boolean removal, boolean newlyPlanned) {
+        if (!journaling) return;
+        if (journalSize == journal.length) journal = Arrays.copyOf(journal, Math.max(64, journalSize * 2));
+        journal[journalSize++] = date.toEpochDay() << 32 | (long) job.getId() << 18 | (long) index << 2
+                | (removal ? 2 : 0) | (newlyPlanned ? 1 : 0);
+    }
+
+    // whether the two doctors do the same jobs on every stored day, e.g. after the presets and the carryover
+    public boolean haveSameAssignments(Doctor a, Doctor b) {
+        int indexA = doctorIndex(a), indexB = doctorIndex(b);
+        for (int cell = 0; cell < assigned.length; cell += words)
+            if ((assigned[cell + (indexA >>> 6)] >>> indexA & 1) != (assigned[cell + (indexB >>> 6)] >>> indexB & 1))
+                return false;
+        return true;
+    }
+
+    public void addListener(DienstplanListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(DienstplanListener listener) {
+        listeners.remove(listener);
+    }
+
     // Method to get the doctor assigned to a specific shift on a given date
     public List<Doctor> getAssignedDoctors(LocalDate date, Job job) {
-        DailyPlan dailyPlan = schedule.get(date);
-        if (dailyPlan == null) return new ArrayList<>();
-        return dailyPlan.getDoctors(job);
+        List<Doctor> doctors = new ArrayList<>();
+        int day = dayIndex(date);
+        if (day >= 0) addDoctors(doctors, cell(day, job));
+        return doctors;
     }
 
     public List<Doctor> getAssignedDoctors(LocalDate date, Job... jobs) {
-        DailyPlan dailyPlan = schedule.get(date);
-        if (dailyPlan == null) return new ArrayList<>();
-        List<Doctor> assigned = new ArrayList<>();
+        List<Doctor> doctors = new ArrayList<>();
+        int day = dayIndex(date);
+        if (day < 0) return doctors;
+        long[] union = new long[words];
         for (Job job : jobs) {
-            for (Doctor doctor : dailyPlan.getDoctors(job)) {
-                if (!assigned.contains(doctor)) assigned.add(doctor);
+            int cell = cell(day, job);
+            for (int w = 0; w < words; w++) union[w] |= assigned[cell + w];
+        }
+        for (int w = 0; w < words; w++) addDoctors(doctors, union[w], w);
+        return doctors;
+    }
+
+    /**
+     * @return a view of one day of the plan, or null if the day isn't part of the plan
+     */
+    public DailyPlan getDailyPlan(LocalDate date) {
+        if (!isValidDate(date)) return null;
+        return new DailyPlan(this, date);
+    }
+
+    public Dienstplan copy() {
+        Dienstplan copy = new Dienstplan(doctorCount, jobCount);
+        copy.startDate = startDate;
+        copy.endDate = endDate;
+        copy.score = score;
+        copy.explanations = explanations; // shared, explanations are only written while the original is built
+        copy.doctorOrder = new ArrayList<>(doctorOrder);
+        copy.carryover = carryover;
+        copy.firstDay = firstDay;
+        copy.planned = planned.clone();
+        copy.assigned = assigned.clone();
+        System.arraycopy(doctorsByIndex, 0, copy.doctorsByIndex, 0, doctorCount);
+        System.arraycopy(jobsById, 0, copy.jobsById, 0, jobCount);
+        copy.firstCountedMonth = firstCountedMonth;
+        copy.timesScheduled = timesScheduled.clone();
+        copy.timesScheduledOnWeekends = timesScheduledOnWeekends.clone();
+        return copy;
+    }
+
+    // removes all assignments but keeps the dates of the plan
+    public void clear() {
+        Arrays.fill(assigned, 0);
+        Arrays.fill(timesScheduled, 0);
+        Arrays.fill(timesScheduledOnWeekends, 0);
+        commit();
+    }
+
+    public int getTimesScheduledInMonth(LocalDate date, Doctor doctor, Job job) {
+        int index = counterIndex(date, doctor, job);
+        return index < 0 ? 0 : timesScheduled[index];
+    }
+
+    public int getTimesScheduledOnWeekendsInMonth(LocalDate date, Doctor doctor, Job job) {
+        int index = counterIndex(date, doctor, job);
+        return index < 0 ? 0 : timesScheduledOnWeekends[index];
+    }
+
+    // copies the assignments of one day without marking it as planned and without telling the listeners
+    private void copyDay(Dienstplan from, LocalDate date) {
+        int fromDay = from.dayIndex(date);
+        if (fromDay < 0) return;
+        int day = ensureDay(date);
+        for (int job = 0; job < jobCount; job++) {
+            for (int w = 0; w < words; w++) {
+                long bits = from.assigned[cell(fromDay, job) + w] & ~assigned[cell(day, job) + w];
+                assigned[cell(day, job) + w] |= bits;
+                while (bits != 0) {
+                    int index = w * 64 + Long.numberOfTrailingZeros(bits);
+                    doctorsByIndex[index] = from.doctorsByIndex[index];
+                    countAssignment(date, job, index);
+                    bits &= bits - 1;
+                }
             }
         }
-        return assigned;
+    }
+
+    private void countAssignment(LocalDate date, Job job, Doctor doctor) {
+        countAssignment(date, job.getId(), doctorIndex(doctor));
+    }
+
+    private void countAssignment(LocalDate date, int job, int doctor) {
+        int month = monthNumber(date);
+        if (timesScheduled.length == 0) firstCountedMonth = month;
+        if (month < firstCountedMonth) growCounters(firstCountedMonth - month, 0);
+        int months = timesScheduled.length / (doctorCount * jobCount);
+        if (month >= firstCountedMonth + months) growCounters(0, month - firstCountedMonth - months + 1);
+        int index = counterIndex(date, doctor, job);
+        timesScheduled[index]++;
+        if (Dates.isWeekend(date)) timesScheduledOnWeekends[index]++;
+    }
+
+    // adds empty months before and after the counted months
+    private void growCounters(int monthsBefore, int monthsAfter) {
+        int monthSize = doctorCount * jobCount;
+        int[] counts = new int[timesScheduled.length + (monthsBefore + monthsAfter) * monthSize];
+        int[] weekendCounts = new int[counts.length];
+        System.arraycopy(timesScheduled, 0, counts, monthsBefore * monthSize, timesScheduled.length);
+        System.arraycopy(timesScheduledOnWeekends, 0, weekendCounts, monthsBefore * monthSize, timesScheduled.length);
+        timesScheduled = counts;
+        timesScheduledOnWeekends = weekendCounts;
+        firstCountedMonth -= monthsBefore;
+    }
+
+    // returns -1 when nothing has been counted for this month
+    private int counterIndex(LocalDate date, Doctor doctor, Job job) {
+        return counterIndex(date, doctorIndex(doctor), job.getId());
+    }
+
+    private int counterIndex(LocalDate date, int doctor, int job) {
+        int month = monthNumber(date) - firstCountedMonth;
+        int index = (month * doctorCount + doctor) * jobCount + job;
+        if (month < 0 || index >= timesScheduled.length) return -1;
+        return index;
+    }
+
+    private static int monthNumber(LocalDate date) {
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    // returns -1 for dates outside the stored days
+    private int dayIndex(LocalDate date) {
+        long day = date.toEpochDay() - firstDay;
+        if (day < 0 || day >= planned.length) return -1;
+        return (int) day;
+    }
+
+    // makes room for the date and returns its day index
+    private int ensureDay(LocalDate date) {
+        long epochDay = date.toEpochDay();
+        if (planned.length == 0) firstDay = epochDay;
+        int daysBefore = (int) Math.max(0, firstDay - epochDay);
+        int daysAfter = (int) Math.max(0, epochDay - firstDay - planned.length + 1);
+        if (daysBefore > 0 || daysAfter > 0) {
+            if (daysAfter > 0) daysAfter = Math.max(daysAfter, 7); // the last week often runs past the end date
+            boolean[] newPlanned = new boolean[planned.length + daysBefore + daysAfter];
+            long[] newAssigned = new long[newPlanned.length * jobCount * words];
+            System.arraycopy(planned, 0, newPlanned, daysBefore, planned.length);
+            System.arraycopy(assigned, 0, newAssigned, daysBefore * jobCount * words, assigned.length);
+            planned = newPlanned;
+            assigned = newAssigned;
+            firstDay -= daysBefore;
+        }
+        return (int) (epochDay - firstDay);
+    }
+
+    private int cell(int day, Job job) {
+        return cell(day, job.getId());
+    }
+
+    private int cell(int day, int job) {
+        return (day * jobCount + job) * words;
+    }
+
+    private static int doctorIndex(Doctor doctor) {
+        return doctor.getId();
+    }
+
+    private void addDoctors(List<Doctor> doctors, int cell) {
+        for (int w = 0; w < words; w++) addDoctors(doctors, assigned[cell + w], w);
+    }
+
+    private void addDoctors(List<Doctor> doctors, long bits, int word) {
+        while (bits != 0) {
+            doctors.add(doctorsByIndex[word * 64 + Long.numberOfTrailingZeros(bits)]);
+            bits &= bits - 1;
+        }
     }
 
     // Example method to print the entire schedule
-    public void printSchedule() {
+    public void printSchedule(Jobs jobs) {
         System.out.println();
-        for (Map.Entry<LocalDate, DailyPlan> entry : getSortedEntries()) {
-            LocalDate date = entry.getKey();
+        for (LocalDate date : getDates()) {
             System.out.println(date + " " + date.getDayOfWeek());
-            entry.getValue().print();
+            getDailyPlan(date).print(jobs);
         }
     }
 
-    private List<Map.Entry<LocalDate, DailyPlan>> getSortedEntries() {
-        // Convert the map entries to a list for sorting
-        List<Map.Entry<LocalDate, DailyPlan>> sortedEntries = new ArrayList<>(schedule.entrySet());
-        // Sort the list based on LocalDate
-        sortedEntries.sort(Map.Entry.comparingByKey());
-        return sortedEntries;
-    }
-
 }
@@ -0,0 +1,13 @@
+package plan.dienst.urologie;
+
+import java.time.LocalDate;
+
+/**
+ * Notified after a doctor is added to or removed from a job in a Dienstplan.
+ */
+public interface DienstplanListener {
+
+    void assigned(LocalDate date, Job job, Doctor doctor);
+
+    void removed(LocalDate date, Job job, Doctor doctor);
+}
@@ -11,37 +11,36 @@ import java.util.List;
 @Setter
 public class Doctor {
 
-    private Doctors.DocName docEnum;
+    private int id; // position in the roster, see Doctors
     private String name;
     private boolean vollzeit = true;
     private List<DayOfWeek> verfugbareTage = new ArrayList<>();
     private List<DayOfWeek> verfugbareTageDienst = new ArrayList<>();
     private int maxDiensteImMonat = 4;
     private double shiftPrioritizationFactor = 1;
-    private int calc; // for temp calculations (i.e. how many weekends in last month worked a shift)
 
-    public boolean isAvailableOn(DayOfWeek dayOfWeek, Jobs.JobName jobName) {
-        if (jobName == Jobs.JobName.DIENST) return verfugbareTageDienst.contains(dayOfWeek);
+    public boolean isAvailableOn(DayOfWeek dayOfWeek, boolean dienst) {
+        if (dienst) return verfugbareTageDienst.contains(dayOfWeek);
         return verfugbareTage.contains(dayOfWeek);
     }
 
-    public boolean isAvailableEveryDay(Jobs.JobName jobName) {
+    public boolean isAvailableEveryDay(boolean dienst) {
         for (DayOfWeek day : DayOfWeek.values())
-            if (!isAvailableOn(day, jobName)) return false;
+            if (!isAvailableOn(day, dienst)) return false;
         return true;
     }
 
     public static class Builder {
 
-        private Doctors.DocName docEnum;
+        private int id;
         private String name;
         private boolean vollzeit;
         private List<DayOfWeek> verfugbareTage;
         private List<DayOfWeek> verfugbareTageDienst;
         private int maxDiensteImMonat;
 
-        public Builder setEnum(Doctors.DocName docEnum) {
-            this.docEnum = docEnum;
+        public Builder setId(int id) {
+            this.id = id;
             return this;
         }
 
@@ -72,7 +71,7 @@ public class Doctor {
 
         public Doctor build() {
             Doctor doctor = new Doctor();
-            doctor.docEnum = docEnum;
+            doctor.id = id;
             doctor.name = name;
             doctor.vollzeit = vollzeit;
             doctor.verfugbareTage = verfugbareTage;
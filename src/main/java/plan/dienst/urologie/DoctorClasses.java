@@ -0,0 +1,67 @@
+package plan.dienst.urologie;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Doctors who are interchangeable: the same contract, the same days for day jobs and for Dienste, the same limit and
+ * prioritization of Dienste, and the same fixed assignments, which are the presets and, in a plan that follows
+ * another quarter, the carryover. Swapping two of them turns a plan into one that is just as good, so a search only
+ * needs to look at one of the two. Each class keeps its doctors in the order they were given.
+ */
+class DoctorClasses {
+
+    private final List<List<Doctor>> classes;
+
+    /**
+     * @param sameAssignments whether two doctors with the same profile have the same fixed assignments
+     */
+    DoctorClasses(List<Doctor> doctors, BiPredicate<Doctor, Doctor> sameAssignments) {
+        classes = new ArrayList<>();
+        for (Doctor doctor : doctors) {
+            List<Doctor> same = null;
+            for (List<Doctor> docs : classes)
+                if (isSameProfile(docs.get(0), doctor) && sameAssignments.test(docs.get(0), doctor)) same = docs;
+            if (same == null) classes.add(same = new ArrayList<>());
+            same.add(doctor);
+        }
+    }
+
+    private DoctorClasses(List<List<Doctor>> classes) {
+        this.classes = classes;
+    }
+
+    // the classes with more than one doctor
+    List<List<Doctor>> getSymmetricClasses() {
+        return classes.stream().filter(docs -> docs.size() > 1).toList();
+    }
+
+    /**
+     * Splits the classes by what their doctors have been given since, e.g. the days of a Dienst week.
+     */
+    DoctorClasses refine(ToIntFunction<Doctor> key) {
+        List<List<Doctor>> refined = new ArrayList<>();
+        for (List<Doctor> docs : classes) {
+            int first = refined.size();
+            for (Doctor doctor : docs) {
+                List<Doctor> same = null;
+                for (int i = first; i < refined.size(); i++)
+                    if (key.applyAsInt(refined.get(i).get(0)) == key.applyAsInt(doctor)) same = refined.get(i);
+                if (same == null) refined.add(same = new ArrayList<>());
+                same.add(doctor);
+            }
+        }
+        return new DoctorClasses(refined);
+    }
+
+    private static boolean isSameProfile(Doctor a, Doctor b) {
+        return a.isVollzeit() == b.isVollzeit()
+                && a.getMaxDiensteImMonat() == b.getMaxDiensteImMonat()
+                && a.getShiftPrioritizationFactor() == b.getShiftPrioritizationFactor()
+                && new HashSet<>(a.getVerfugbareTage()).equals(new HashSet<>(b.getVerfugbareTage()))
+                && new HashSet<>(a.getVerfugbareTageDienst()).equals(new HashSet<>(b.getVerfugbareTageDienst()));
+    }
+}
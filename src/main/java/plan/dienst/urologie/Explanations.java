@@ -1,42 +1,74 @@
 package plan.dienst.urologie;
 
-import org.springframework.stereotype.Component;
-
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
-@Component
+/**
+ * The reasons why doctors didn't get a job, as one bitmask of rule ordinals per day, job and doctor.
+ * Dienst cells hold ShiftRules, all other jobs DayJobRules. Nothing is recorded until init is called, so plans
+ * built during the search don't pay for explanations; PlanBuilder.explain fills them in for the plan that is shown.
+ */
 public class Explanations {
-    private Map<LocalDate, Map<Jobs.JobName, Map<Doctors.DocName, List<String>>>> explanations = new HashMap<>();
 
-    public void init(LocalDate startDate, LocalDate endDate) {
-        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
-            explanations.put(date, new HashMap<>());
-            for (Jobs.JobName job : Jobs.JobName.values()) {
-                explanations.get(date).put(job, new HashMap<>());
-                for (Doctors.DocName doc : Doctors.DocName.values()) {
-                    explanations.get(date).get(job).put(doc, new ArrayList<>());
-                }
-            }
-        }
+    private LocalDate startDate;
+    private List<Doctor> doctors = List.of();
+    private int jobCount;
+    private int dienst; // id of the Dienst
+    private int[] reasons = new int[0]; // [day][job id][doctor id]
+
+    public void init(LocalDate startDate, LocalDate endDate, Jobs jobs, Doctors doctors) {
+        this.startDate = startDate;
+        this.doctors = doctors.getAllDoctors();
+        jobCount = jobs.size();
+        dienst = jobs.getDienst().getId();
+        int days = (int) (endDate.toEpochDay() - startDate.toEpochDay() + 1);
+        reasons = new int[days * jobCount * this.doctors.size()];
+    }
+
+    public boolean isRecording() {
+        return reasons.length > 0;
+    }
+
+    public void addExplanation(LocalDate date, Job job, Doctor doc, ReasonCode reason) {
+        int index = index(date, job, doc);
+        if (index >= 0) reasons[index] |= 1 << reason.ordinal();
+    }
+
+    public void addExplanations(LocalDate date, Job job, Doctor doc, int reasonBits) {
+        int index = index(date, job, doc);
+        if (index >= 0) reasons[index] |= reasonBits;
+    }
+
+    public List<ReasonCode> getReasons(LocalDate date, Job job, Doctor doc) {
+        List<ReasonCode> codes = new ArrayList<>();
+        int index = index(date, job, doc);
+        if (index < 0) return codes;
+        ReasonCode[] all = job.getId() == dienst ? ShiftRule.values() : DayJobRule.values();
+        for (int bits = reasons[index]; bits != 0; bits &= bits - 1) codes.add(all[Integer.numberOfTrailingZeros(bits)]);
+        return codes;
     }
 
-    public void addExplanation(LocalDate date, Jobs.JobName job, Doctors.DocName doc, String explanation) {
-        if (explanations.get(date) == null) init(date, date);
-        Map<Jobs.JobName, Map<Doctors.DocName, List<String>>> dateExplanations = explanations.get(date);
-        Map<Doctors.DocName, List<String>> jobExplanations = dateExplanations.get(job);
-        List<String> docExplanations = jobExplanations.get(doc);
-        docExplanations.add(explanation);
+    public List<String> getExplanations(LocalDate date, Job job, Doctor doc, Locale locale) {
+        return getReasons(date, job, doc).stream().map(reason -> reason.getText(locale)).toList();
     }
 
-    public List<String> getExplanations(LocalDate date, Jobs.JobName job, Doctors.DocName doc) {
-        return explanations.get(date).get(job).get(doc);
+    // every doctor, in roster order
+    public Map<Doctor, List<String>> getExplanations(LocalDate date, Job job, Locale locale) {
+        Map<Doctor, List<String>> explanations = new LinkedHashMap<>();
+        for (Doctor doc : doctors)
+            explanations.put(doc, getExplanations(date, job, doc, locale));
+        return explanations;
     }
 
-    public Map<Doctors.DocName, List<String>> getExplanations(LocalDate date, Jobs.JobName job) {
-        return explanations.get(date).get(job);
+    // returns -1 if nothing is recorded for the date
+    private int index(LocalDate date, Job job, Doctor doc) {
+        if (reasons.length == 0) return -1;
+        long day = date.toEpochDay() - startDate.toEpochDay();
+        if (day < 0 || day >= reasons.length / (jobCount * doctors.size())) return -1;
+        return ((int) day * jobCount + job.getId()) * doctors.size() + doc.getId();
     }
 }
@@ -0,0 +1,82 @@
+package plan.dienst.urologie;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plans consecutive quarters, up to a whole year or more. Each quarter is searched with the Carryover of the ones
+ * before it, so the rules see the end of the quarter before and the Dienste and OPs are balanced over the whole
+ * horizon. As with single quarters, a plan starts on the Monday before its quarter and so takes over the last days
+ * of the plan before. A quarter can only start once the plan of the quarter before is chosen, so the quarters are
+ * searched one after the other, each with all search threads and an equal share of the time budget of PlanBuilder.
+ */
+@Component
+public class HorizonPlanner {
+
+    private final PlanBuilder planBuilder;
+    private final LocalSearch localSearch;
+    private final Doctors doctors;
+    private final Jobs jobs;
+
+    public HorizonPlanner(PlanBuilder planBuilder, LocalSearch localSearch, Doctors doctors, Jobs jobs) {
+        this.planBuilder = planBuilder;
+        this.localSearch = localSearch;
+        this.doctors = doctors;
+        this.jobs = jobs;
+    }
+
+    /**
+     * @param presets presets of all quarters, each quarter takes the ones on its days
+     * @return the plans of the quarters, in order
+     */
+    public List<Dienstplan> makePlans(Presets presets, int jahr, int quartil, int quarters) {
+        if (quarters < 1) throw new IllegalArgumentException("quarters must be at least 1: " + quarters);
+        List<Dienstplan> plans = new ArrayList<>();
+        List<Carryover> carryovers = new ArrayList<>();
+        Carryover carryover = null;
+        Duration budget = Duration.ofMillis(planBuilder.getSearchMillis() / quarters);
+        for (int i = 0; i < quarters; i++) {
+            System.out.println("\nquarter " + quartil + "/" + jahr);
+            Presets quarterPresets = presets.between(Dates.getStartDate(jahr, quartil), Dates.getEndDate(jahr, quartil));
+            PlanSearch search = planBuilder.newSearch(quarterPresets, jahr, quartil)
+                    .timeBudget(budget)
+                    .carryover(carryover)
+                    .build();
+            search.run();
+            Dienstplan plan = search.getBest();
+            if (localSearch.getTimeBudgetMillis() > 0)
+                plan = localSearch.improve(plan, quarterPresets, jahr, quartil, search.getRunSeed());
+            planBuilder.printPlan(plan, quartil);
+            plans.add(plan);
+            if (quartil == 4) {
+                jahr++;
+                quartil = 1;
+            } else quartil++;
+            carryover = Carryover.after(plan, Dates.getStartDate(jahr, quartil), carryover, doctors, jobs);
+            carryovers.add(carryover);
+        }
+        printTotals(carryovers);
+        return plans;
+    }
+
+    // Dienste and OPs of every doctor per quarter and in total, every day counted in the plan that has it last
+    private void printTotals(List<Carryover> carryovers) {
+        System.out.printf("%n%-12s", "Dienst/OP");
+        for (int i = 1; i <= carryovers.size(); i++) System.out.printf("%8s", "Q+" + (i - 1));
+        System.out.printf("%8s%n", "total");
+        for (Doctor doctor : doctors.getAllDoctors()) {
+            System.out.printf("%-12s", doctor.getName());
+            int dienste = 0, ops = 0;
+            for (Carryover carryover : carryovers) {
+                System.out.printf("%8s", (carryover.getDienste(doctor) - dienste) + "/" + (carryover.getOps(doctor) - ops));
+                dienste = carryover.getDienste(doctor);
+                ops = carryover.getOps(doctor);
+            }
+            System.out.printf("%8s%n", dienste + "/" + ops);
+        }
+    }
+}
@@ -10,7 +10,7 @@ import java.util.List;
 @Getter
 public class Job {
 
-    private Jobs.JobName jobEnum;
+    private int id; // position in the roster, see Jobs
     private String name;
     private List<DayOfWeek> verfugbareTage = new ArrayList<>();
     private boolean oneDoctorPerWeek = true;
@@ -20,8 +20,12 @@ public class Job {
     private int maxDoctorsPerDay = 1;
     private boolean dayJob = true;
 
+    void setId(int id) {
+        this.id = id;
+    }
+
     public static class Builder {
-        private Jobs.JobName jobEnum;
+        private int id;
         private String name;
         private List<DayOfWeek> verfugbareTage;
         private boolean oneDoctorPerWeek;
@@ -31,8 +35,8 @@ public class Job {
         private int maxDoctorsPerDay;
         private boolean dayJob;
 
-        public Builder setEnum(Jobs.JobName jobEnum) {
-            this.jobEnum = jobEnum;
+        public Builder setId(int id) {
+            this.id = id;
             return this;
         }
 
@@ -79,7 +83,7 @@ public class Job {
 
         public Job build() {
             Job job = new Job();
-            job.jobEnum = jobEnum;
+            job.id = id;
             job.name = name;
             job.verfugbareTage = verfugbareTage;
             job.oneDoctorPerWeek = oneDoctorPerWeek;
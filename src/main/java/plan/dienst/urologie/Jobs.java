@@ -6,104 +6,76 @@ import org.springframework.stereotype.Component;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
-import static java.time.DayOfWeek.*;
-
+/**
+ * The jobs of the Roster. A job's id is its position in jobsById. The planner knows six jobs by name: EAZ, ZNA,
+ * Station, OP, Dienst and Urlaub must be in every roster. Any other job is a day job with the same rules as the
+ * others, planned before the OP, which takes everyone who is left.
+ */
 @Component
 @Getter
 public class Jobs {
 
-    public enum JobName {
-        EAZ, ZNA, STATION, OP, DIENST, URLAUB
-    }
+    public static final String EAZ = "EAZ";
+    public static final String ZNA = "ZNA";
+    public static final String STATION = "STATION";
+    public static final String OP = "OP";
+    public static final String DIENST = "DIENST";
+    public static final String URLAUB = "URLAUB";
+
+    private final List<Job> jobsById;
+    private final Job eaz;
+    private final Job zna;
+    private final Job station;
+    private final Job op;
+    private final Job dienst;
+    private final Job urlaub;
+    private final List<Job> otherJobs = new ArrayList<>(); // the day jobs the planner doesn't know by name
 
-    private Job eaz = new Job.Builder()
-            .setEnum(JobName.EAZ)
-            .setName("EAZ")
-            .setVerfugbareTage(MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY)
-            .setOneDoctorPerWeek(true)
-            .setDifferentDoctorsOnConsecutiveDays(false)
-            .setMaxPerMonthPerDoctor(10)
-            .setMaxPerMonthPerDoctorOnWeekends(0)
-            .setMaxDoctorsPerDay(1)
-            .build();
-    private Job zna = new Job.Builder()
-            .setEnum(JobName.ZNA)
-            .setName("ZNA")
-            .setVerfugbareTage(MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY)
-            .setOneDoctorPerWeek(true)
-            .setDifferentDoctorsOnConsecutiveDays(false)
-            .setMaxPerMonthPerDoctor(10)
-            .setMaxPerMonthPerDoctorOnWeekends(0)
-            .setMaxDoctorsPerDay(1)
-            .build();
-    private Job station = new Job.Builder()
-            .setEnum(JobName.STATION)
-            .setName("Station")
-            .setVerfugbareTage(MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY)
-            .setOneDoctorPerWeek(true)
-            .setDifferentDoctorsOnConsecutiveDays(false)
-            .setMaxPerMonthPerDoctor(10)
-            .setMaxPerMonthPerDoctorOnWeekends(0)
-            .setMaxDoctorsPerDay(1)
-            .build();
-    private Job op = new Job.Builder()
-            .setEnum(JobName.OP)
-            .setName("OP")
-            .setVerfugbareTage(MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY)
-            .setOneDoctorPerWeek(false)
-            .setDifferentDoctorsOnConsecutiveDays(false)
-            .setMaxPerMonthPerDoctor(31)
-            .setMaxPerMonthPerDoctorOnWeekends(0)
-            .setMaxDoctorsPerDay(1000)
-            .build();
-    private Job dienst = new Job.Builder()
-            .setEnum(JobName.DIENST)
-            .setName("Dienst")
-            .setVerfugbareTage(MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY, SATURDAY, SUNDAY)
-            .setOneDoctorPerWeek(false)
-            .setDifferentDoctorsOnConsecutiveDays(true)
-            .setMaxPerMonthPerDoctor(5)
-            .setMaxPerMonthPerDoctorOnWeekends(2)
-            .setMaxDoctorsPerDay(1)
-            .build();
-    private Job urlaub = new Job.Builder()
-            .setEnum(JobName.URLAUB)
-            .setName("Urlaub")
-            .setVerfugbareTage(MONDAY, TUESDAY, WEDNESDAY, THURSDAY, FRIDAY, SATURDAY, SUNDAY)
-            .setOneDoctorPerWeek(false)
-            .setDifferentDoctorsOnConsecutiveDays(false)
-            .setMaxPerMonthPerDoctor(31)
-            .setMaxPerMonthPerDoctorOnWeekends(10)
-            .setMaxDoctorsPerDay(10)
-            .build();
+    private final List<Job> allJobs = new ArrayList<>(); // all but Urlaub
+    private final List<Job> dayJobs = new ArrayList<>(); // all but Dienst
 
-    private List<Job> allJobs = new ArrayList<>();
-    {
-        allJobs.add(eaz);
-        allJobs.add(zna);
-        allJobs.add(op);
-        allJobs.add(station);
-        allJobs.add(dienst);
+    private final Map<String, Job> jobMap = new HashMap<>(); // by upper-case name
+
+    public Jobs(Roster roster) {
+        jobsById = List.copyOf(roster.getJobs());
+        for (int id = 0; id < jobsById.size(); id++) {
+            Job job = jobsById.get(id);
+            job.setId(id);
+            if (jobMap.put(key(job.getName()), job) != null)
+                throw new IllegalArgumentException("Two jobs are called " + job.getName());
+        }
+        eaz = getJob(EAZ);
+        zna = getJob(ZNA);
+        station = getJob(STATION);
+        op = getJob(OP);
+        dienst = getJob(DIENST);
+        urlaub = getJob(URLAUB);
+        for (Job job : jobsById)
+            if (job != eaz && job != zna && job != station && job != op && job != dienst && job != urlaub)
+                otherJobs.add(job);
+        allJobs.addAll(List.of(eaz, zna, op, station, dienst));
+        allJobs.addAll(otherJobs);
+        dayJobs.addAll(List.of(eaz, zna, op, station, urlaub));
+        dayJobs.addAll(otherJobs);
     }
-    private List<Job> dayJobs = new ArrayList<>();
-    {
-        dayJobs.add(eaz);
-        dayJobs.add(zna);
-        dayJobs.add(op);
-        dayJobs.add(station);
-        dayJobs.add(urlaub);
+
+    public int size() {
+        return jobsById.size();
     }
 
-    private Map<JobName, Job> jobMap = new HashMap<>();
-    {
-        jobMap.put(JobName.EAZ, eaz);
-        jobMap.put(JobName.ZNA, zna);
-        jobMap.put(JobName.OP, op);
-        jobMap.put(JobName.STATION, station);
-        jobMap.put(JobName.DIENST, dienst);
-        jobMap.put(JobName.URLAUB, urlaub);
+    /**
+     * @param name the name of the job, in any case
+     */
+    public Job getJob(String name) {
+        Job job = name == null ? null : jobMap.get(key(name));
+        if (job == null) throw new IllegalArgumentException("No job is called " + name);
+        return job;
     }
 
+    private static String key(String name) {
+        return name.toUpperCase(Locale.ROOT);
+    }
 }
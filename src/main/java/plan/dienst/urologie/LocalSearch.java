@@ -0,0 +1,282 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Improves a finished Dienstplan with simulated annealing. A move swaps two doctors' Dienst days, moves an OP day
+ * to another doctor, or gives a weekly EAZ/ZNA/Station block to another doctor. Every assignment a move makes is
+ * checked with the rules of DayJobDecider and ShiftDecider, and assignments near the move are checked again, since
+ * the deciders only look backwards. Moves never empty a job and never touch presets. A rejected move is undone with
+ * the journal of Dienstplan.
+ */
+@Component
+public class LocalSearch {
+
+    private final Jobs jobs;
+    private final Doctors doctors;
+    private final DayJobDecider dayJobDecider;
+    private final ShiftDecider shiftDecider;
+    private final Statistics statistics;
+
+    @Getter @Setter
+    @Value("${planner.local-search.millis:5000}")
+    private long timeBudgetMillis = 5000;
+    @Getter @Setter
+    private double startTemperature = 2;
+    @Getter @Setter
+    private double endTemperature = 0.02;
+
+    public LocalSearch(Jobs jobs, Doctors doctors, DayJobDecider dayJobDecider, ShiftDecider shiftDecider,
+                       Statistics statistics) {
+        this.jobs = jobs;
+        this.doctors = doctors;
+        this.dayJobDecider = dayJobDecider;
+        this.shiftDecider = shiftDecider;
+        this.statistics = statistics;
+    }
+
+    /**
+     * @param seed of the random moves, e.g. the run seed of the search that found the start plan
+     * @return the best plan found, the start plan is not changed
+     */
+    public Dienstplan improve(Dienstplan start, Presets presets, int jahr, int quartil, long seed) {
+        Search search = new Search(start.copy(), presets, jahr, quartil, seed);
+        ScoreTracker tracker = search.tracker;
+        long deadline = System.nanoTime() + timeBudgetMillis * 1_000_000;
+        double score = tracker.getScore();
+        double bestScore = score;
+        Dienstplan best = start;
+        int moves = 0, accepted = 0;
+        while (System.nanoTime() < deadline) {
+            double progress = 1 - (double) (deadline - System.nanoTime()) / (timeBudgetMillis * 1_000_000);
+            double temperature = startTemperature * Math.pow(endTemperature / startTemperature, progress);
+            moves++;
+            if (!search.tryRandomMove()) continue;
+            double delta = tracker.getScore() - score;
+            if (delta <= 0 || search.random.nextDouble() < Math.exp(-delta / temperature)) {
+                score += delta;
+                accepted++;
+                search.plan.commit();
+                if (score < bestScore - 1e-9) {
+                    bestScore = score;
+                    best = search.plan.copy();
+                }
+            } else search.plan.rollbackTo(search.mark);
+        }
+        tracker.detach();
+        best.setScore(statistics.getScore(best, jahr, quartil));
+        System.out.println("local search: " + moves + " moves, " + accepted + " accepted, score "
+                + start.getScore() + " -> " + best.getScore());
+        return best;
+    }
+
+    private static class Change {
+        private final LocalDate date;
+        private final Job job;
+        private final Doctor doctor;
+        private final boolean added;
+
+        private Change(LocalDate date, Job job, Doctor doctor, boolean added) {
+            this.date = date;
+            this.job = job;
+            this.doctor = doctor;
+            this.added = added;
+        }
+    }
+
+    private class Search {
+
+        private final Dienstplan plan;
+        private final Dienstplan fixed = new Dienstplan(doctors.size(), jobs.size()); // the presets
+        private final Random random;
+        private final List<LocalDate> dates;
+        private final List<Doctor> allDoctors = doctors.getAllDoctors();
+        private final List<Doctor> fullTimeDoctors;
+        private final List<Job> weeklyJobs;
+        private final ScoreTracker tracker;
+        private final List<Change> changes = new ArrayList<>(); // of the current move, for the checks
+        private int mark;
+        private final List<Change> neighbours = new ArrayList<>();
+        private final List<Boolean> neighbourValid = new ArrayList<>();
+        /*
+        Statistics.getScore only counts the OP distribution. Leaving a doctor without a job would be the easy way
+        to even it out, so a move may not add doctors that don't work.
+         */
+        private int notWorkingBefore;
+
+        Search(Dienstplan plan, Presets presets, int jahr, int quartil, long seed) {
+            this.plan = plan;
+            random = new Random(seed);
+            for (Preset preset : presets.getPresets())
+                fixed.assignDoctors(preset.getDate(), jobs.getJob(preset.getJobName()),
+                        doctors.getDoctor(preset.getDocName()));
+            dates = plan.getDates();
+            fullTimeDoctors = allDoctors.stream().filter(Doctor::isVollzeit).toList();
+            weeklyJobs = List.of(jobs.getEaz(), jobs.getZna(), jobs.getStation());
+            tracker = statistics.track(plan, jahr, quartil);
+        }
+
+        boolean tryRandomMove() {
+            changes.clear();
+            neighbours.clear();
+            neighbourValid.clear();
+            notWorkingBefore = tracker.getDoctorsNotWorking();
+            mark = plan.mark();
+            boolean done = switch (random.nextInt(3)) {
+                case 0 -> swapShifts();
+                case 1 -> moveOpDay();
+                default -> reassignWeeklyBlock();
+            };
+            if (!done || !neighboursStillValid() || !jobsStillFilled() || tracker.getDoctorsNotWorking() > notWorkingBefore) {
+                plan.rollbackTo(mark);
+                return false;
+            }
+            return true;
+        }
+
+        private boolean swapShifts() {
+            LocalDate first = randomDate(false);
+            LocalDate second = randomDate(false);
+            Doctor a = firstDoctor(first, jobs.getDienst());
+            Doctor b = firstDoctor(second, jobs.getDienst());
+            if (a == null || b == null || a == b) return false;
+            addNeighbours(a, first, second);
+            addNeighbours(b, first, second);
+            // the day after a Dienst is free, so the new doctors lose their OP and the old ones may take it
+            return remove(first, jobs.getDienst(), a) && remove(second, jobs.getDienst(), b)
+                    && remove(first.plusDays(1), jobs.getOp(), b) && remove(second.plusDays(1), jobs.getOp(), a)
+                    && assign(first, jobs.getDienst(), b, true) && assign(second, jobs.getDienst(), a, true)
+                    && assign(first.plusDays(1), jobs.getOp(), a, false) && assign(second.plusDays(1), jobs.getOp(), b, false);
+        }
+
+        private boolean moveOpDay() {
+            LocalDate date = randomDate(true);
+            List<Doctor> onOp = plan.getAssignedDoctors(date, jobs.getOp());
+            if (onOp.isEmpty()) return false;
+            Doctor from = onOp.get(random.nextInt(onOp.size()));
+            Doctor to = allDoctors.get(random.nextInt(allDoctors.size()));
+            if (from == to) return false;
+            addNeighbours(from, date);
+            addNeighbours(to, date);
+            return remove(date, jobs.getOp(), from) && assign(date, jobs.getOp(), to, true);
+        }
+
+        // the doctor who does the job all week hands it to another full-time doctor and takes their OP days
+        private boolean reassignWeeklyBlock() {
+            Job job = weeklyJobs.get(random.nextInt(weeklyJobs.size()));
+            LocalDate monday = Dates.getNearestPreviousMondayTo(randomDate(true));
+            List<LocalDate> week = new ArrayList<>();
+            for (LocalDate date = monday; date.getDayOfWeek() != DayOfWeek.SATURDAY; date = date.plusDays(1))
+                if (plan.isValidDate(date) && job.getVerfugbareTage().contains(date.getDayOfWeek())) week.add(date);
+            if (week.isEmpty()) return false;
+            Doctor from = firstDoctor(week.get(0), job);
+            Doctor to = fullTimeDoctors.get(random.nextInt(fullTimeDoctors.size()));
+            if (from == null || from == to || !from.isVollzeit()) return false;
+            for (LocalDate date : week) {
+                if (!plan.getAssignedDoctors(date, job).equals(List.of(from))) return false;
+                addNeighbours(from, date);
+                addNeighbours(to, date);
+            }
+            for (LocalDate date : week)
+                if (!remove(date, job, from) || !remove(date, jobs.getOp(), to)) return false;
+            for (LocalDate date : week) if (!assign(date, job, to, true)) return false;
+            for (LocalDate date : week) assign(date, jobs.getOp(), from, false);
+            return true;
+        }
+
+        private boolean remove(LocalDate date, Job job, Doctor doctor) {
+            if (!plan.isDoctorWorking(date, job, doctor)) return true;
+            if (fixed.isDoctorWorking(date, job, doctor)) return false;
+            plan.removeDoctor(date, job, doctor);
+            changes.add(new Change(date, job, doctor, false));
+            return true;
+        }
+
+        // a required assignment that breaks a rule fails the move, an optional one is skipped
+        private boolean assign(LocalDate date, Job job, Doctor doctor, boolean required) {
+            if (!plan.isValidDate(date)) return !required;
+            if (plan.isDoctorWorking(date, job, doctor)) return true;
+            if (!canWork(date, job, doctor)) return !required;
+            plan.assignDoctors(date, job, doctor);
+            changes.add(new Change(date, job, doctor, true));
+            return true;
+        }
+
+        private boolean canWork(LocalDate date, Job job, Doctor doctor) {
+            if (job == jobs.getDienst()) return shiftDecider.getRules().firstRejection(plan, doctor, date, job) == null;
+            return dayJobDecider.getRules().firstRejection(plan, doctor, date, job) == null;
+        }
+
+        // checks an existing assignment as if it were made now
+        private boolean isValid(Change assignment) {
+            plan.removeDoctor(assignment.date, assignment.job, assignment.doctor);
+            boolean valid = canWork(assignment.date, assignment.job, assignment.doctor);
+            plan.assignDoctors(assignment.date, assignment.job, assignment.doctor);
+            return valid;
+        }
+
+        /*
+        The rules look at the days before (Dienst yesterday, same doctor all week, last weekend's Dienst) and at
+        the Monday to Friday of the week, so a change can break assignments up to a week later. Those are
+        remembered with their validity before the move.
+         */
+        private void addNeighbours(Doctor doctor, LocalDate... dates) {
+            for (LocalDate date : dates) {
+                LocalDate last = date.plusDays(8);
+                for (LocalDate day = Dates.getNearestPreviousMondayTo(date); !day.isAfter(last); day = day.plusDays(1)) {
+                    for (Job job : jobs.getAllJobs()) {
+                        if (plan.isDoctorWorking(day, job, doctor)) addNeighbour(day, job, doctor);
+                        // the doctor on the weekly job the next day
+                        if (day.equals(date.plusDays(1)) && job.isOneDoctorPerWeek() && job != jobs.getDienst())
+                            for (Doctor next : plan.getAssignedDoctors(day, job)) addNeighbour(day, job, next);
+                    }
+                }
+            }
+        }
+
+        private void addNeighbour(LocalDate date, Job job, Doctor doctor) {
+            if (fixed.isDoctorWorking(date, job, doctor)) return;
+            Change neighbour = new Change(date, job, doctor, true);
+            neighbours.add(neighbour);
+            neighbourValid.add(isValid(neighbour));
+        }
+
+        private boolean neighboursStillValid() {
+            for (int i = 0; i < neighbours.size(); i++) {
+                Change neighbour = neighbours.get(i);
+                if (!neighbourValid.get(i) || !plan.isDoctorWorking(neighbour.date, neighbour.job, neighbour.doctor))
+                    continue;
+                if (!isValid(neighbour)) return false;
+            }
+            for (Change change : changes)
+                if (change.added && !isValid(change)) return false;
+            return true;
+        }
+
+        private boolean jobsStillFilled() {
+            for (Change change : changes)
+                if (!change.added && !plan.isAssigned(change.date, change.job)) return false;
+            return true;
+        }
+
+        private LocalDate randomDate(boolean weekday) {
+            LocalDate date = dates.get(random.nextInt(dates.size()));
+            while (weekday && Dates.isWeekend(date)) date = dates.get(random.nextInt(dates.size()));
+            return date;
+        }
+
+        private Doctor firstDoctor(LocalDate date, Job job) {
+            List<Doctor> assigned = plan.getAssignedDoctors(date, job);
+            return assigned.isEmpty() ? null : assigned.get(0);
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package plan.dienst.urologie;
 
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.DayOfWeek;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.*;
-
-import static plan.dienst.urologie.Jobs.JobName.URLAUB;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 public class PlanBuilder {
@@ -16,76 +19,238 @@ public class PlanBuilder {
     private final DayJobDecider dayJobDecider;
     private final ShiftDecider shiftDecider;
     private final ShiftOrganizer shiftOrganizer;
-    private final Explanations explanations;
     private final Statistics statistics;
+    private final LocalSearch localSearch;
+    private final PlanMetrics planMetrics;
+
+    /*
+    Number of worker threads for makePlans, 0 for one per processor. Each restart builds its own Dienstplan, and
+    the shared components are stateless, so restarts can run on any number of threads.
+     */
+    @Setter
+    @Value("${planner.search.threads:0}")
+    private int parallelism;
+    @Getter
+    @Setter
+    @Value("${planner.explanations.locale:en}")
+    private Locale locale = Locale.ENGLISH; // for the explanations
+    @Getter
+    @Setter
+    @Value("${planner.keep-best:5}")
+    private int keepBest = 5; // plans kept by makePlans, the best and its runners-up
+    @Getter
+    @Setter
+    @Value("${planner.seed:0}")
+    private long seed; // seed of makePlans, 0 for a new one every run
+    /*
+    When makePlans stops restarting, see PlanSearch. A limit of 0 is no limit.
+     */
+    @Getter
+    @Setter
+    @Value("${planner.search.millis:60000}")
+    private long searchMillis = 60000;
+    @Getter
+    @Setter
+    @Value("${planner.search.max-restarts:0}")
+    private long maxRestarts;
+    @Getter
+    @Setter
+    @Value("${planner.search.target-score:0}")
+    private double targetScore;
+    @Getter
+    @Setter
+    @Value("${planner.search.stall-restarts:3000}")
+    private long stallRestarts = 3000;
+    @Getter
+    @Setter
+    @Value("${planner.search.stall-millis:0}")
+    private long stallMillis;
+    /*
+    Steps of WeekRepair for each week the day jobs left with gaps, 0 keeps the greedy fill.
+     */
+    @Getter
+    @Setter
+    @Value("${planner.repair.max-steps:1000}")
+    private int repairSteps = 1000;
+    /*
+    Fills the day jobs of each week most constrained slot first, see fillMostConstrainedFirst, instead of date by
+    date in a fixed job order.
+     */
+    @Getter
+    @Setter
+    @Value("${planner.day-jobs.most-constrained-first:false}")
+    private boolean mostConstrainedFirst;
 
     public PlanBuilder(Jobs jobs, Doctors doctors, DataFinder dataFinder,
                        DayJobDecider dayJobDecider, ShiftDecider shiftDecider, ShiftOrganizer shiftOrganizer,
-                       Explanations explanations, Statistics statistics) {
+                       Statistics statistics, LocalSearch localSearch, PlanMetrics planMetrics) {
         this.jobs = jobs;
         this.doctors = doctors;
         this.dataFinder = dataFinder;
         this.dayJobDecider = dayJobDecider;
         this.shiftDecider = shiftDecider;
         this.shiftOrganizer = shiftOrganizer;
-        this.explanations = explanations;
         this.statistics = statistics;
+        this.localSearch = localSearch;
+        this.planMetrics = planMetrics;
     }
 
     private void addPreset(Dienstplan dienstplan, Preset preset) {
         dienstplan.assignDoctors(preset.getDate(),
-                jobs.getJobMap().get(preset.getJobName()), doctors.getDoctorMap().get(preset.getDocName()));
+                jobs.getJob(preset.getJobName()), doctors.getDoctor(preset.getDocName()));
     }
 
     private void addPresets(Dienstplan dienstplan, Presets presets) {
         presets.getPresets().forEach(preset -> addPreset(dienstplan, preset));
     }
 
-    public void dienst(Dienstplan dienstplan, Doctors.DocName doctor, LocalDate date) {
-        dienstplan.assignDoctors(date, jobs.getDienst(), doctors.getDoctorMap().get(doctor));
+    public void dienst(Dienstplan dienstplan, String doctor, LocalDate date) {
+        dienstplan.assignDoctors(date, jobs.getDienst(), doctors.getDoctor(doctor));
     }
 
-    public void urlaub(Dienstplan dienstplan, Doctors.DocName doctor, LocalDate date) {
-        dienstplan.assignDoctors(date, jobs.getUrlaub(), doctors.getDoctorMap().get(doctor));
+    public void urlaub(Dienstplan dienstplan, String doctor, LocalDate date) {
+        dienstplan.assignDoctors(date, jobs.getUrlaub(), doctors.getDoctor(doctor));
     }
 
     public void makePlans(Presets presets, int jahr, int quartil) {
-        List<Dienstplan> dienstplans = new ArrayList<>();
-        Dienstplan bestPlan = makePlan(presets, jahr, quartil);
+        PlanSearch search = newSearch(presets, jahr, quartil).build();
+        search.run();
+        planMetrics.printSummary();
+        System.out.println("run seed " + search.getRunSeed());
+        printRunnersUp(search.getBestSeeds());
+        Dienstplan bestPlan = search.getBest();
+        if (localSearch.getTimeBudgetMillis() > 0)
+            bestPlan = localSearch.improve(bestPlan, presets, jahr, quartil, search.getRunSeed());
+        printPlan(bestPlan, quartil);
+    }
+
+    public int getParallelism() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    // a search with the limits of this PlanBuilder
+    public PlanSearch.Builder newSearch(Presets presets, int jahr, int quartil) {
+        return new PlanSearch.Builder(this, presets, jahr, quartil)
+                .seed(seed)
+                .parallelism(getParallelism())
+                .keepBest(keepBest)
+                .timeBudget(Duration.ofMillis(searchMillis))
+                .maxRestarts(maxRestarts)
+                .targetScore(targetScore)
+                .stallRestarts(stallRestarts)
+                .stallTime(Duration.ofMillis(stallMillis));
+    }
+
+    public static long restartSeed(long runSeed, long restart) {
+        return new SplittableRandom(runSeed + restart).nextLong(); // neighbouring restarts get unrelated seeds
+    }
+
+    private void printRunnersUp(TopK<Long> bestSeeds) {
+        System.out.println("best " + bestSeeds.getK() + " of " + bestSeeds.getOffered() + " plans:");
+        bestSeeds.getEntries().forEach(entry -> System.out.printf("  score %.2f seed %d%n", entry.getScore(), entry.getItem()));
+    }
+
+    public void printPlan(Dienstplan bestPlan, int quartil) {
+        explain(bestPlan);
         double bestScore = bestPlan.getScore();
-        for (int i=0; i<10000; i++) {
-            Dienstplan dienstplan = makePlan(presets, jahr, quartil);
-            dienstplans.add(dienstplan);
-            //System.out.println("score " + dienstplan.getScore());
-            if (dienstplan.getScore() < bestScore) {
-                bestPlan = dienstplan;
-                bestScore = dienstplan.getScore();
-            }
-        }
-        bestPlan.printSchedule();
-        printDoctorStats(bestPlan,quartil*3-2, quartil*3-1, quartil*3);
+        bestPlan.printSchedule(jobs);
+        printDoctorStats(bestPlan, quartil*3-2, quartil*3-1, quartil*3);
         System.out.println("best score = " + bestScore);
     }
 
     public Dienstplan makePlan(Presets presets, int jahr, int quartil) {
-        Dienstplan dienstplan = new Dienstplan();
-        dienstplan.initDates(jahr, quartil);
-        explanations.init(dienstplan.getStartDate(), dienstplan.getEndDate());
+        return makePlan(presets, jahr, quartil, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * The same seed always gives the same plan, so a plan can be rebuilt from its seed.
+     */
+    public Dienstplan makePlan(Presets presets, int jahr, int quartil, long seed) {
+        return makePlan(presets, jahr, quartil, seed, null);
+    }
+
+    /**
+     * Plans the quarter after the one the carryover was made from, see Carryover. Null plans the quarter alone.
+     */
+    public Dienstplan makePlan(Presets presets, int jahr, int quartil, long seed, Carryover carryover) {
+        PlannerEvents.Restart event = new PlannerEvents.Restart();
+        event.begin();
+        SplittableRandom random = new SplittableRandom(seed);
+        Dienstplan dienstplan = new Dienstplan(doctors.size(), jobs.size());
+        if (carryover == null) dienstplan.initDates(jahr, quartil);
+        else dienstplan.initDates(jahr, quartil, carryover);
+        dienstplan.setDoctorOrder(new ArrayList<>(doctors.getAllDoctors()));
+        ScoreTracker scoreTracker = statistics.track(dienstplan, jahr, quartil);
+        long start = System.nanoTime();
         addPresets(dienstplan, presets);
-        shiftOrganizer.scheduleShifts(dienstplan, jahr, quartil);
-        for (LocalDate date : dienstplan.getDates()) {
-            assignDoctorsToDayJob(dienstplan, date, jobs.getEaz());
-            assignDoctorsToDayJob(dienstplan, date, jobs.getZna());
-            assignDoctorsToDayJob(dienstplan, date, jobs.getStation());
-            assignDoctorsToDayJob(dienstplan, date, jobs.getOp());
+        start = planMetrics.phase(PlanMetrics.Phase.PRESETS, start);
+        shiftOrganizer.scheduleShifts(dienstplan, jahr, quartil, random);
+        start = planMetrics.phase(PlanMetrics.Phase.SHIFTS, start);
+        // each day job is timed over all days; the jobs of the roster the planner doesn't know by name are filled
+        // with EAZ, ZNA and Station, and the OP comes after them and takes everyone who is left
+        List<Job> dayJobs = new ArrayList<>(List.of(jobs.getEaz(), jobs.getZna(), jobs.getStation()));
+        dayJobs.addAll(jobs.getOtherJobs());
+        long[] dayJobNanos = new long[dayJobs.size()];
+        long opNanos = 0;
+        long repairNanos = 0;
+        List<LocalDate> dates = dienstplan.getDates();
+        for (int first = 0, end; first < dates.size(); first = end) {
+            end = first + 1;
+            while (end < dates.size() && dates.get(end).getDayOfWeek() != DayOfWeek.MONDAY) end++;
+            List<LocalDate> week = dates.subList(first, end);
+            int mark = repairSteps > 0 ? dienstplan.mark() : 0;
+            List<Doctor> order = new ArrayList<>(dienstplan.getDoctorOrder());
+            if (mostConstrainedFirst) {
+                fillMostConstrainedFirst(dienstplan, week, dayJobs, dayJobNanos);
+                for (LocalDate date : week) {
+                    long t0 = System.nanoTime();
+                    assignDoctorsToDayJob(dienstplan, date, jobs.getOp());
+                    opNanos += System.nanoTime() - t0;
+                }
+            } else for (LocalDate date : week) {
+                for (int j = 0; j < dayJobs.size(); j++) {
+                    long t0 = System.nanoTime();
+                    assignDoctorsToDayJob(dienstplan, date, dayJobs.get(j));
+                    dayJobNanos[j] += System.nanoTime() - t0;
+                }
+                long t0 = System.nanoTime();
+                assignDoctorsToDayJob(dienstplan, date, jobs.getOp());
+                opNanos += System.nanoTime() - t0;
+            }
+            if (repairSteps > 0) {
+                long t0 = System.nanoTime();
+                new WeekRepair(dienstplan, dataFinder, dayJobDecider, jobs.getOp(), week, dayJobs, repairSteps)
+                        .repair(mark, order);
+                dienstplan.commit();
+                repairNanos += System.nanoTime() - t0;
+            }
+        }
+        planMetrics.record(PlanMetrics.Phase.EAZ, dayJobNanos[0]);
+        planMetrics.record(PlanMetrics.Phase.ZNA, dayJobNanos[1]);
+        planMetrics.record(PlanMetrics.Phase.STATION, dayJobNanos[2]);
+        long otherNanos = 0;
+        for (int j = 3; j < dayJobNanos.length; j++) otherNanos += dayJobNanos[j];
+        if (!jobs.getOtherJobs().isEmpty()) planMetrics.record(PlanMetrics.Phase.OTHER, otherNanos);
+        planMetrics.record(PlanMetrics.Phase.OP, opNanos);
+        if (repairSteps > 0) planMetrics.record(PlanMetrics.Phase.REPAIR, repairNanos);
+        start = System.nanoTime();
+        dienstplan.setScore(scoreTracker.getScore());
+        scoreTracker.detach();
+        planMetrics.phase(PlanMetrics.Phase.SCORE, start);
+        planMetrics.restart(dienstplan.getScore());
+        if (event.shouldCommit()) {
+            event.seed = seed;
+            event.year = jahr;
+            event.quarter = quartil;
+            event.score = dienstplan.getScore();
+            event.commit();
         }
-        dienstplan.setScore(statistics.getScore(dienstplan, jahr, quartil));
         return dienstplan;
     }
 
     private void assignDoctorsToDayJob(Dienstplan dienstplan, LocalDate date, Job job) {
         List<Doctor> docsSortedByJobsDoneLast30Days = dataFinder.sortByScheduledJobsThisMonth(dienstplan,
-                date, doctors.getAllDoctors(), job);
+                date, dienstplan.getDoctorOrder(), job);
         for (Doctor doc : docsSortedByJobsDoneLast30Days) {
             if (dayJobDecider.canWork(dienstplan, doc, date, job)) {
                 dienstplan.assignDoctors(date, job, doc);
@@ -93,9 +258,81 @@ public class PlanBuilder {
         }
     }
 
+    /*
+    The day jobs of one week, most constrained slot first, as in DSATUR: the next doctor goes to the open (date, job)
+    slot the fewest doctors can still take, ties to the earlier date and then to the job earlier in the list. A slot
+    opens when the slot of its job on the day before is closed, because SAME_DOC_ALL_WEEK and DIFFERENT_FULL_TIME_DOC
+    look at that day, so each job goes through the week in date order while the jobs overtake each other. No rule of
+    one job looks at another job on another day, so a doctor who gets a slot only drops out of the open slots of the
+    same date, and only the slot that got fuller is counted again. A slot closes when nobody else can take it; the
+    counts only go down, so a closed slot stays closed. Each slot tries its doctors in the order of
+    assignDoctorsToDayJob. The OP comes after the week, as it takes everyone who is left.
+     */
+    private void fillMostConstrainedFirst(Dienstplan dienstplan, List<LocalDate> week, List<Job> dayJobs, long[] nanos) {
+        int n = dayJobs.size();
+        int[] day = new int[n]; // the open slot of each job, as a position in week; week.size() when all are closed
+        List<List<Doctor>> order = new ArrayList<>(n);
+        boolean[][] eligible = new boolean[n][doctors.size()]; // [job][doctor id] for the open slot
+        int[] count = new int[n];
+        for (int j = 0; j < n; j++) {
+            order.add(null);
+            long start = System.nanoTime();
+            day[j] = -1;
+            openNextSlot(dienstplan, week, dayJobs.get(j), j, day, order, eligible[j], count);
+            nanos[j] += System.nanoTime() - start;
+        }
+        while (true) {
+            int next = -1;
+            for (int j = 0; j < n; j++) {
+                if (day[j] == week.size()) continue;
+                if (next < 0 || count[j] < count[next] || count[j] == count[next] && day[j] < day[next]) next = j;
+            }
+            if (next < 0) return;
+            long start = System.nanoTime();
+            Job job = dayJobs.get(next);
+            LocalDate date = week.get(day[next]);
+            Doctor doc = null;
+            for (Doctor candidate : order.get(next))
+                if (eligible[next][candidate.getId()]) {
+                    doc = candidate;
+                    break;
+                }
+            dienstplan.assignDoctors(date, job, doc);
+            for (int j = 0; j < n; j++) {
+                if (j == next || day[j] != day[next] || !eligible[j][doc.getId()]) continue;
+                eligible[j][doc.getId()] = false;
+                if (--count[j] == 0) openNextSlot(dienstplan, week, dayJobs.get(j), j, day, order, eligible[j], count);
+            }
+            count[next] = countEligible(dienstplan, date, job, order.get(next), eligible[next]);
+            if (count[next] == 0) openNextSlot(dienstplan, week, job, next, day, order, eligible[next], count);
+            nanos[next] += System.nanoTime() - start;
+        }
+    }
+
+    // moves a job to its next date someone can take it on, or past the week
+    private void openNextSlot(Dienstplan dienstplan, List<LocalDate> week, Job job, int j, int[] day,
+                              List<List<Doctor>> order, boolean[] eligible, int[] count) {
+        for (day[j]++; day[j] < week.size(); day[j]++) {
+            LocalDate date = week.get(day[j]);
+            order.set(j, new ArrayList<>(dataFinder.sortByScheduledJobsThisMonth(dienstplan, date,
+                    dienstplan.getDoctorOrder(), job)));
+            count[j] = countEligible(dienstplan, date, job, order.get(j), eligible);
+            if (count[j] > 0) return;
+        }
+    }
+
+    private int countEligible(Dienstplan dienstplan, LocalDate date, Job job, List<Doctor> docs, boolean[] eligible) {
+        int count = 0;
+        for (Doctor doc : docs) {
+            eligible[doc.getId()] = dayJobDecider.canWork(dienstplan, doc, date, job);
+            if (eligible[doc.getId()]) count++;
+        }
+        return count;
+    }
+
     private void assignDoctorsToShift(Dienstplan dienstplan, LocalDate date) {
         List<Doctor> docsSortedByJobsDoneLast30Days = dataFinder.sortByScheduledJobsThisMonth(dienstplan,
-                date, doctors.getAllDoctors(), jobs.getDienst());
+                date, dienstplan.getDoctorOrder(), jobs.getDienst());
         for (Doctor doc : docsSortedByJobsDoneLast30Days) {
             if (shiftDecider.canWorkShift(dienstplan, doc, date)) {
                 dienstplan.assignDoctors(date, jobs.getDienst(), doc);
@@ -104,23 +341,24 @@ public class PlanBuilder {
         }
     }
 
+    // months of the year the plan ends in
     public void printDoctorStats(Dienstplan dienstplan, int... months) {
+        int year = dienstplan.getEndDate().getYear();
         int fieldWidthText = 10;
         int fieldWidthNumber = 3;
         System.out.printf("\n\t %-" + fieldWidthText + "s", "Month");
         for (int month : months) System.out.printf("%-" + fieldWidthNumber + "s", month);
         System.out.printf("%-" + fieldWidthNumber + "s%s", "T", "D");
         System.out.println();
-        for (Doctor doctor : new ArrayList<>(doctors.getAllDoctors())) {
+        for (Doctor doctor : doctors.getAllDoctors()) {
             System.out.println(doctor.getName());
             for (Job job : jobs.getAllJobs()) {
                 System.out.printf("\t %-" + fieldWidthText + "s", job.getName());
                 int[] timesWorked = new int[months.length];
                 int sum = 0;
                 for (int i=0; i<months.length; i++) {
-                    LocalDate startDate = LocalDate.of(2024, months[i], 1);
-                    dataFinder.sortByScheduledJobsThisMonth(dienstplan, startDate, doctors.getAllDoctors(), job);
-                    timesWorked[i] = doctor.getCalc();
+                    LocalDate startDate = LocalDate.of(year, months[i], 1);
+                    timesWorked[i] = dataFinder.getTimesDoctorScheduledThisMonth(dienstplan, startDate, doctor, job);
                     sum += timesWorked[i];
                 }
                 for (int j : timesWorked) System.out.printf("%-" + fieldWidthNumber + "s", j);
@@ -132,10 +370,32 @@ public class PlanBuilder {
         printPlanDeficiencies(dienstplan, months);
     }
 
+    /**
+     * Records why each doctor isn't doing each job, checked against the finished plan with all rules of
+     * DayJobDecider and ShiftDecider. The search doesn't record explanations, so this is done for the plan that
+     * is shown only.
+     */
+    public void explain(Dienstplan dienstplan) {
+        Explanations explanations = new Explanations();
+        explanations.init(dienstplan.getStartDate(), dienstplan.getEndDate(), jobs, doctors);
+        for (LocalDate date = dienstplan.getStartDate(); !date.isAfter(dienstplan.getEndDate()); date = date.plusDays(1)) {
+            for (Job job : jobs.getAllJobs()) {
+                ConstraintChain<?> rules = job == jobs.getDienst() ? shiftDecider.getRules() : dayJobDecider.getRules();
+                for (Doctor doctor : doctors.getAllDoctors()) {
+                    if (dienstplan.isDoctorWorking(date, job, doctor)) continue;
+                    explanations.addExplanations(date, job, doctor,
+                            rules.allRejections(dienstplan, doctor, date, job));
+                }
+            }
+        }
+        dienstplan.setExplanations(explanations);
+    }
+
     private void printPlanDeficiencies(Dienstplan dienstplan, int... months) {
         boolean deficienciesExist = false;
-        LocalDate startDate = LocalDate.of(2024, months[0], 1);
-        LocalDate endDate = LocalDate.of(2024, months[months.length-1], 1);
+        int year = dienstplan.getEndDate().getYear();
+        LocalDate startDate = LocalDate.of(year, months[0], 1);
+        LocalDate endDate = LocalDate.of(year, months[months.length-1], 1).plusMonths(1).minusDays(1);
         System.out.println("Plan Deficiencies");
         for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
             Set<Doctor> docsAssigned = new HashSet<>();
@@ -149,7 +409,7 @@ public class PlanBuilder {
             for (Doctor doc : doctors.getAllDoctors()) {
                 if (!docsAssigned.contains(doc) &&
                         (doc.getVerfugbareTage().contains(d) || doc.getVerfugbareTageDienst().contains(d))
-                && !dienstplan.getAssignedDoctors(date.minusDays(1), jobs.getDienst()).contains(doc)
+                && !dienstplan.isDoctorWorking(date.minusDays(1), jobs.getDienst(), doc)
                 && d != DayOfWeek.SATURDAY && d != DayOfWeek.SUNDAY) {
                     deficienciesExist = true;
                     System.out.println(d + " doc should be working: " + doc.getName());
@@ -170,7 +430,7 @@ public class PlanBuilder {
             else fullness += .5;
         }
         boolean jobEmpty = fullness == 0;
-        boolean jobNotFull = job.getJobEnum().equals(Jobs.JobName.DIENST) ? fullness < .5 : fullness < 1;
+        boolean jobNotFull = job == jobs.getDienst() ? fullness < .5 : fullness < 1;
         if (jobScheduled && jobEmpty) { //jobNotFull) {
             deficienciesExist = true;
             System.out.println("_________________");
@@ -185,9 +445,9 @@ public class PlanBuilder {
         System.out.print("\n" + job.getName() + " |");
         assignedDoctors.forEach(doc -> System.out.print(" " + doc.getName()));
         System.out.println();
-        for (Map.Entry<Doctors.DocName, List<String>> exp :
-                explanations.getExplanations(date, job.getJobEnum()).entrySet()) {
-            System.out.print("  " + exp.getKey() + " ");
+        for (Map.Entry<Doctor, List<String>> exp :
+                dienstplan.getExplanations().getExplanations(date, job, locale).entrySet()) {
+            System.out.print("  " + exp.getKey().getName() + " ");
             for (String str : exp.getValue()) System.out.print("  " + str);
             System.out.println();
         }
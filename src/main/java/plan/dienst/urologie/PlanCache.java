@@ -0,0 +1,182 @@
+package plan.dienst.urologie;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Finished searches of the REST API by fingerprint, so that the same request gets its plan at once and a request
+ * with a longer time budget goes on from the cached search. The fingerprint is a SHA-256 of the doctors and
+ * jobs of the Planner, so that a request with its own roster has its own entries, the presets, the quarter, the
+ * search limits except the time budget, the settings of PlanBuilder and LocalSearch that change the plan of a
+ * seed, and VERSION.
+ * Entries are dropped least recently used first when there are more than maxEntries or they take more than
+ * maxBytes. If a directory is set, every entry is also written there as JSON and read back after a restart.
+ */
+@Component
+public class PlanCache {
+
+    // raise it when a change to the planner gives another plan for the same request, so old entries aren't used
+    static final int VERSION = 1;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .build();
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Path directory; // null without the disk tier
+    private final LinkedHashMap<String, CachedPlan> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    public PlanCache(@Value("${planner.cache.max-entries:100}") int maxEntries,
+                     @Value("${planner.cache.max-bytes:16777216}") long maxBytes,
+                     @Value("${planner.cache.directory:}") String directory) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.directory = directory.isBlank() ? null : Path.of(directory);
+    }
+
+    public String fingerprint(Planner planner, PlanSearch.Builder search) {
+        List<String> presets = new ArrayList<>();
+        for (Preset preset : search.getPresets().getPresets())
+            presets.add(preset.getDate() + " " + preset.getJobName() + " " + preset.getDocName());
+        Collections.sort(presets);
+        Map<String, Object> key = new TreeMap<>();
+        key.put("doctors", planner.getDoctors().getAllDoctors());
+        key.put("jobs", planner.getJobs().getJobsById()); // with Urlaub
+        key.put("presets", presets);
+        key.put("year", search.getJahr());
+        key.put("quarter", search.getQuartil());
+        key.put("seed", search.getSeed());
+        key.put("maxRestarts", search.getMaxRestarts());
+        key.put("targetScore", search.getTargetScore());
+        key.put("stallRestarts", search.getStallRestarts());
+        key.put("stallMillis", search.getStallTime().toMillis());
+        key.put("repairSteps", search.getPlanBuilder().getRepairSteps());
+        key.put("mostConstrainedFirst", search.getPlanBuilder().isMostConstrainedFirst());
+        key.put("localSearchMillis", planner.getLocalSearch().getTimeBudgetMillis());
+        key.put("version", VERSION);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(key));
+            return HexFormat.of().formatHex(hash);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint the plan request", e);
+        }
+    }
+
+    public synchronized CachedPlan get(String key) {
+        CachedPlan cached = entries.get(key);
+        if (cached == null && directory != null) {
+            cached = read(key);
+            if (cached != null) add(cached);
+        }
+        return cached;
+    }
+
+    public synchronized void put(CachedPlan cached) {
+        CachedPlan old = entries.remove(cached.getKey());
+        if (old != null) bytes -= old.getSizeInBytes();
+        add(cached);
+        if (directory != null) write(cached);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public CachedPlan toCachedPlan(Planner planner, String key, PlanSearch search, long searchedMillis,
+                                   Dienstplan plan, int year, int quartil) {
+        CachedPlan cached = new CachedPlan();
+        cached.setKey(key);
+        cached.setYear(year);
+        cached.setQuarter(quartil);
+        cached.setRunSeed(search.getRunSeed());
+        cached.setNextRestart(search.getNextRestart());
+        cached.setBestSeed(search.getBestSeeds().getBest().getItem());
+        cached.setSearchScore(search.getBestScore());
+        cached.setScore(plan.getScore());
+        cached.setSearchedMillis(searchedMillis);
+        cached.setStopReason(search.getStopReason());
+        List<Integer> assignments = new ArrayList<>();
+        LocalDate start = plan.getStartDate();
+        for (LocalDate date = start; !date.isAfter(plan.getEndDate().plusDays(7)); date = date.plusDays(1)) {
+            for (Job job : planner.getJobs().getJobsById()) {
+                for (Doctor doctor : plan.getAssignedDoctors(date, job)) {
+                    assignments.add((int) (date.toEpochDay() - start.toEpochDay()));
+                    assignments.add(job.getId());
+                    assignments.add(doctor.getId());
+                }
+            }
+        }
+        cached.setAssignments(assignments.stream().mapToInt(Integer::intValue).toArray());
+        return cached;
+    }
+
+    public Dienstplan toPlan(Planner planner, CachedPlan cached) {
+        Jobs jobs = planner.getJobs();
+        Doctors doctors = planner.getDoctors();
+        Dienstplan plan = new Dienstplan(doctors.size(), jobs.size());
+        plan.initDates(cached.getYear(), cached.getQuarter());
+        plan.setDoctorOrder(new ArrayList<>(doctors.getAllDoctors()));
+        int[] assignments = cached.getAssignments();
+        for (int i = 0; i + 2 < assignments.length; i += 3) {
+            if (assignments[i + 1] >= jobs.size() || assignments[i + 2] >= doctors.size())
+                throw new IllegalStateException("Cached plan " + cached.getKey() + " does not fit the jobs and doctors");
+            plan.assignDoctors(plan.getStartDate().plusDays(assignments[i]),
+                    jobs.getJobsById().get(assignments[i + 1]),
+                    doctors.getAllDoctors().get(assignments[i + 2]));
+        }
+        plan.setScore(cached.getScore());
+        return plan;
+    }
+
+    private void add(CachedPlan cached) {
+        entries.put(cached.getKey(), cached);
+        bytes += cached.getSizeInBytes();
+        Iterator<CachedPlan> leastRecentlyUsed = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && leastRecentlyUsed.hasNext()) {
+            CachedPlan evicted = leastRecentlyUsed.next();
+            if (evicted == cached) break;
+            bytes -= evicted.getSizeInBytes();
+            leastRecentlyUsed.remove();
+        }
+    }
+
+    private CachedPlan read(String key) {
+        Path file = directory.resolve(key + ".json");
+        if (!Files.exists(file)) return null;
+        try {
+            return objectMapper.readValue(file.toFile(), CachedPlan.class);
+        } catch (IOException e) {
+            System.out.println("could not read cached plan " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // written to a temporary file first, so that a crash never leaves half a file
+    private void write(CachedPlan cached) {
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, cached.getKey(), ".tmp");
+            Files.writeString(temporary, objectMapper.writeValueAsString(cached), StandardCharsets.UTF_8);
+            Files.move(temporary, directory.resolve(cached.getKey() + ".json"),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("could not write cached plan " + cached.getKey() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package plan.dienst.urologie;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * POST /api/plans queues a plan generation and answers at once with the job, GET /api/plans/{id} shows its
+ * progress and GET /api/plans/{id}/plan the plan with its statistics and deficiencies. DELETE /api/plans/{id}
+ * cancels a queued job and stops a running one, which then keeps the best plan found so far.
+ * GET /api/plans/{id}/events streams the best plan while the search runs.
+ */
+@RestController
+@RequestMapping("/api/plans")
+public class PlanController {
+
+    private final PlanJobs planJobs;
+    private final PlanStream planStream;
+
+    public PlanController(PlanJobs planJobs, PlanStream planStream) {
+        this.planJobs = planJobs;
+        this.planStream = planStream;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestBody PlanRequest request) {
+        try {
+            PlanJob job = planJobs.submit(request);
+            return ResponseEntity.accepted().location(URI.create("/api/plans/" + job.getId())).body(job);
+        } catch (RejectedExecutionException e) {
+            HttpStatus status = planJobs.isShutdown() ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.TOO_MANY_REQUESTS;
+            return ResponseEntity.status(status).header(HttpHeaders.RETRY_AFTER, "30")
+                    .body(Map.of("error", "too many plans are being made, try again later"));
+        }
+    }
+
+    @GetMapping("/{id}")
+    public PlanJob get(@PathVariable String id) {
+        return find(id);
+    }
+
+    @GetMapping("/{id}/plan")
+    public PlanReport getPlan(@PathVariable String id) {
+        PlanJob job = find(id);
+        PlanReport report = planJobs.getReport(job);
+        if (report == null) throw new ResponseStatusException(HttpStatus.CONFLICT, "job " + id + " has no plan, it is " + job.getStatus());
+        return report;
+    }
+
+    // server-sent events with each new best plan, see PlanStream
+    @GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable String id) {
+        return planStream.subscribe(find(id));
+    }
+
+    @DeleteMapping("/{id}")
+    public PlanJob cancel(@PathVariable String id) {
+        find(id);
+        return planJobs.cancel(id);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    private PlanJob find(String id) {
+        PlanJob job = planJobs.get(id);
+        if (job == null) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "no job " + id);
+        return job;
+    }
+}
@@ -0,0 +1,138 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.concurrent.Future;
+
+/**
+ * One plan generation submitted to PlanJobs. The getters are what the REST API shows of it.
+ */
+public class PlanJob {
+
+    public enum Status { QUEUED, RUNNING, DONE, CANCELLED, FAILED }
+
+    @Getter
+    private final String id;
+    @Getter
+    private final int year;
+    @Getter
+    private final int quarter;
+    @Getter
+    private final Instant submitted = Instant.now();
+    @Getter
+    private volatile Instant started;
+    @Getter
+    private volatile Instant finished;
+    @Getter
+    private volatile Status status = Status.QUEUED;
+    @Getter
+    private volatile String error;
+
+    @Getter
+    private final boolean fromCache; // answered from the PlanCache without searching
+
+    final Planner planner; // of the roster of the request
+    final Presets presets;
+    final PlanSearch search;
+    final String cacheKey;
+    final CachedPlan resumedFrom; // the cached search this one goes on with, or null
+    volatile Future<?> future;
+    private Dienstplan plan;
+    private PlanReport report;
+
+    PlanJob(String id, int year, int quarter, Planner planner, Presets presets, PlanSearch search, String cacheKey,
+            CachedPlan resumedFrom) {
+        this.id = id;
+        this.year = year;
+        this.quarter = quarter;
+        this.planner = planner;
+        this.presets = presets;
+        this.search = search;
+        this.cacheKey = cacheKey;
+        this.resumedFrom = resumedFrom;
+        fromCache = false;
+    }
+
+    // a job that is done at once with the cached plan
+    PlanJob(String id, int year, int quarter, Planner planner, Presets presets, PlanSearch search, String cacheKey,
+            Dienstplan plan) {
+        this.id = id;
+        this.year = year;
+        this.quarter = quarter;
+        this.planner = planner;
+        this.presets = presets;
+        this.search = search;
+        this.cacheKey = cacheKey;
+        resumedFrom = null;
+        fromCache = true;
+        this.plan = plan;
+        status = Status.DONE;
+        started = submitted;
+        finished = submitted;
+    }
+
+    public long getRestarts() {
+        return search.getRestarts();
+    }
+
+    public Double getBestScore() {
+        double score = search.getBestScore();
+        return score == Double.POSITIVE_INFINITY ? null : score;
+    }
+
+    public PlanSearch.StopReason getStopReason() {
+        return search.getStopReason();
+    }
+
+    public boolean hasEnded() {
+        return status == Status.DONE || status == Status.CANCELLED || status == Status.FAILED;
+    }
+
+    // false if the job was cancelled while it was queued
+    synchronized boolean start() {
+        if (status != Status.QUEUED) return false;
+        status = Status.RUNNING;
+        started = Instant.now();
+        return true;
+    }
+
+    synchronized void finish(Dienstplan plan) {
+        this.plan = plan;
+        status = Status.DONE;
+        finished = Instant.now();
+    }
+
+    synchronized void fail(Throwable cause) {
+        error = String.valueOf(cause.getMessage());
+        status = Status.FAILED;
+        finished = Instant.now();
+    }
+
+    /**
+     * A queued job is dropped, a running one stops searching and keeps the best plan so far.
+     * @return true if the job was queued, so its task can be taken out of the queue
+     */
+    synchronized boolean cancel() {
+        if (status == Status.QUEUED) {
+            status = Status.CANCELLED;
+            finished = Instant.now();
+            if (future != null) future.cancel(false);
+            return true;
+        }
+        if (status == Status.RUNNING) search.stop();
+        return false;
+    }
+
+    synchronized Dienstplan getPlan() {
+        return plan;
+    }
+
+    synchronized PlanReport getReport() {
+        return report;
+    }
+
+    synchronized void setReport(PlanReport report) {
+        this.report = report;
+    }
+}
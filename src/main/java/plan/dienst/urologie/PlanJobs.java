@@ -0,0 +1,160 @@
+package plan.dienst.urologie;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the plan generations of the REST API. A fixed number of workers run one PlanSearch each, and at most
+ * queueCapacity more jobs wait for a worker. When the queue is full submit throws RejectedExecutionException,
+ * so callers are told to come back later instead of piling up work. Finished jobs are kept until there are more
+ * than keepFinished of them.
+ */
+@Component
+public class PlanJobs {
+
+    private final Planner planner;
+    private final PlanCache planCache;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, PlanJob> planJobs = new ConcurrentHashMap<>();
+    private final int searchThreads;
+    private final long maxSearchMillis;
+    private final int keepFinished;
+
+    public PlanJobs(Planner planner, PlanCache planCache,
+                    @Value("${planner.api.workers:2}") int workers,
+                    @Value("${planner.api.queue-capacity:8}") int queueCapacity,
+                    @Value("${planner.api.search-threads:1}") int searchThreads,
+                    @Value("${planner.api.max-search-millis:600000}") long maxSearchMillis,
+                    @Value("${planner.api.keep-finished:100}") int keepFinished) {
+        this.planner = planner;
+        this.planCache = planCache;
+        this.searchThreads = searchThreads;
+        this.maxSearchMillis = maxSearchMillis;
+        this.keepFinished = keepFinished;
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "plan-job-" + threads.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the request is not valid
+     * @throws RejectedExecutionException if the queue is full or the application is shutting down
+     */
+    public PlanJob submit(PlanRequest request) {
+        Planner planner = request.getRoster() == null ? this.planner : this.planner.forRoster(request.toRoster());
+        Presets presets = request.toPresets(planner.getJobs(), planner.getDoctors());
+        PlanSearch.Builder builder = request.toSearch(planner.getPlanBuilder(), presets, maxSearchMillis)
+                .parallelism(searchThreads);
+        String key = planCache.fingerprint(planner, builder);
+        CachedPlan cached = planCache.get(key);
+        String id = UUID.randomUUID().toString();
+        long timeBudget = builder.getTimeBudget().toMillis();
+        if (cached != null) builder.resume(cached.getRunSeed(), cached.getNextRestart(), cached.getBestSeed(),
+                cached.getSearchScore());
+        if (cached != null && cached.covers(timeBudget)) {
+            PlanJob job = new PlanJob(id, request.getYear(), request.getQuarter(), planner, presets, builder.build(),
+                    key, planCache.toPlan(planner, cached));
+            planJobs.put(id, job);
+            removeOldJobs();
+            return job;
+        }
+        if (cached != null) builder.timeBudget(Duration.ofMillis(timeBudget - cached.getSearchedMillis()));
+        PlanJob job = new PlanJob(id, request.getYear(), request.getQuarter(), planner, presets, builder.build(), key,
+                cached);
+        planJobs.put(job.getId(), job);
+        try {
+            job.future = executor.submit(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            planJobs.remove(job.getId());
+            throw e;
+        }
+        removeOldJobs();
+        return job;
+    }
+
+    public PlanJob get(String id) {
+        return planJobs.get(id);
+    }
+
+    public PlanJob cancel(String id) {
+        PlanJob job = planJobs.get(id);
+        // a cancelled task stays in the queue until a worker takes it, so it is taken out to free its place
+        if (job != null && job.cancel() && job.future instanceof Runnable task) executor.remove(task);
+        return job;
+    }
+
+    /**
+     * @return the report of the finished plan, or of the best plan so far while the job runs; null if there is
+     * no plan yet
+     */
+    public PlanReport getReport(PlanJob job) {
+        synchronized (job) {
+            if (job.getReport() != null) return job.getReport();
+            if (job.getStatus() == PlanJob.Status.DONE && job.getPlan() != null) {
+                job.setReport(job.planner.getPlanReporter().report(job.getPlan(), job.getYear(), job.getQuarter()));
+                return job.getReport();
+            }
+        }
+        if (job.getStatus() != PlanJob.Status.RUNNING) return null;
+        Dienstplan best = job.search.getBest();
+        return best == null ? null : job.planner.getPlanReporter().report(best, job.getYear(), job.getQuarter());
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        planJobs.values().forEach(PlanJob::cancel);
+    }
+
+    private void run(PlanJob job) {
+        if (!job.start()) return;
+        try {
+            job.search.run();
+            Dienstplan best = job.search.getBest();
+            LocalSearch localSearch = job.planner.getLocalSearch();
+            if (best != null && localSearch.getTimeBudgetMillis() > 0
+                    && job.getStopReason() != PlanSearch.StopReason.STOPPED)
+                best = localSearch.improve(best, job.presets, job.getYear(), job.getQuarter(),
+                        job.search.getRunSeed());
+            if (best == null) {
+                job.finish(null);
+                return;
+            }
+            CachedPlan previous = job.resumedFrom;
+            if (previous != null && previous.getScore() < best.getScore()) best = planCache.toPlan(job.planner, previous);
+            long searchedMillis = job.search.getElapsed().toMillis() + (previous == null ? 0 : previous.getSearchedMillis());
+            planCache.put(planCache.toCachedPlan(job.planner, job.cacheKey, job.search, searchedMillis, best,
+                    job.getYear(), job.getQuarter()));
+            job.finish(best);
+        } catch (RuntimeException e) {
+            job.fail(e);
+        }
+    }
+
+    private void removeOldJobs() {
+        if (planJobs.size() <= keepFinished) return;
+        planJobs.values().stream()
+                .filter(PlanJob::hasEnded)
+                .sorted(Comparator.comparing(PlanJob::getSubmitted))
+                .limit(planJobs.size() - keepFinished)
+                .forEach(job -> planJobs.remove(job.getId()));
+    }
+}
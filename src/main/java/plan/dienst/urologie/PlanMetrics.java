@@ -0,0 +1,95 @@
+package plan.dienst.urologie;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters of the planning pipeline: a timer per phase of PlanBuilder.makePlan, the restarts and their
+ * scores, and how the Dienst weeks of ShiftOrganizer were filled. In server mode they are on /actuator/prometheus,
+ * the CLI prints them with printSummary.
+ */
+@Component
+public class PlanMetrics {
+
+    public enum Phase { PRESETS, SHIFTS, EAZ, ZNA, STATION, OTHER, OP, REPAIR, SCORE }
+
+    private final Timer[] phases = new Timer[Phase.values().length];
+    private final Counter restarts;
+    private final DistributionSummary scores;
+    private final Counter weeksFilled;
+    private final Counter weeksInfeasible;
+    private final Counter shiftsIndividually;
+
+    public PlanMetrics(MeterRegistry registry) {
+        for (Phase phase : Phase.values())
+            phases[phase.ordinal()] = Timer.builder("planner.plan.phase")
+                    .description("time of one phase of makePlan")
+                    .tag("phase", phase.name().toLowerCase())
+                    .register(registry);
+        restarts = Counter.builder("planner.restarts").description("plans made by makePlan").register(registry);
+        scores = DistributionSummary.builder("planner.score")
+                .description("score of each plan made by makePlan")
+                .serviceLevelObjectives(5, 10, 15, 20, 30, 40, 60, 80)
+                .publishPercentiles(0.5, 0.9)
+                .register(registry);
+        weeksFilled = Counter.builder("planner.shift.weeks").description("Dienst weeks of ShiftOrganizer")
+                .tag("result", "filled").register(registry);
+        weeksInfeasible = Counter.builder("planner.shift.weeks").description("Dienst weeks of ShiftOrganizer")
+                .tag("result", "infeasible").register(registry);
+        shiftsIndividually = Counter.builder("planner.shift.individual")
+                .description("Dienste filled one by one by scheduleIndividually").register(registry);
+    }
+
+    /**
+     * Records the phase as the time since start.
+     * @return the end of the phase, the start of the next one
+     */
+    public long phase(Phase phase, long start) {
+        long end = System.nanoTime();
+        phases[phase.ordinal()].record(end - start, TimeUnit.NANOSECONDS);
+        return end;
+    }
+
+    public void record(Phase phase, long nanos) {
+        phases[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void restart(double score) {
+        restarts.increment();
+        scores.record(score);
+    }
+
+    // a week filled by WeekShifts, or one it proved can't be filled
+    public void week(boolean filled) {
+        if (filled) weeksFilled.increment();
+        else weeksInfeasible.increment();
+    }
+
+    public void shiftIndividually() {
+        shiftsIndividually.increment();
+    }
+
+    public void printSummary() {
+        double total = 0;
+        for (Timer timer : phases) total += timer.totalTime(TimeUnit.MILLISECONDS);
+        System.out.printf("%n%-10s%10s%12s%10s%10s%8s%n", "phase", "count", "total ms", "mean ms", "max ms", "share");
+        for (Phase phase : Phase.values()) {
+            Timer timer = phases[phase.ordinal()];
+            double phaseTotal = timer.totalTime(TimeUnit.MILLISECONDS);
+            System.out.printf("%-10s%10d%12.0f%10.3f%10.3f%7.1f%%%n", phase.name().toLowerCase(), timer.count(),
+                    phaseTotal, timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS),
+                    total == 0 ? 0 : phaseTotal * 100 / total);
+        }
+        System.out.printf("restarts %.0f, score mean %.2f max %.2f", restarts.count(), scores.mean(), scores.max());
+        for (ValueAtPercentile percentile : scores.takeSnapshot().percentileValues())
+            System.out.printf(", p%.0f %.2f", percentile.percentile() * 100, percentile.value());
+        System.out.printf("%nDienst weeks: %.0f filled, %.0f infeasible; %.0f Dienste filled one by one%n",
+                weeksFilled.count(), weeksInfeasible.count(), shiftsIndividually.count());
+    }
+}
@@ -0,0 +1,75 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A plan as the REST API returns it: the schedule, the jobs of each doctor per month, the score components and
+ * the deficiencies with their explanations. Made by PlanReporter.
+ */
+@Getter
+public class PlanReport {
+
+    private final int year;
+    private final int quarter;
+    private final double score;
+    private final int emptyJobs;
+    private final int doctorsNotWorking;
+    private final double shiftDistributionScore;
+    private final double opDistributionScore;
+    private final List<Day> schedule;
+    private final Map<String, Map<String, List<Integer>>> jobsPerMonth; // by doctor, then job name
+    private final List<Deficiency> deficiencies;
+
+    PlanReport(int year, int quarter, ScoreTracker tracker, List<Day> schedule,
+               Map<String, Map<String, List<Integer>>> jobsPerMonth, List<Deficiency> deficiencies) {
+        this.year = year;
+        this.quarter = quarter;
+        score = tracker.getScore();
+        emptyJobs = tracker.getEmptyJobs();
+        doctorsNotWorking = tracker.getDoctorsNotWorking();
+        shiftDistributionScore = tracker.getShiftDistributionScore();
+        opDistributionScore = tracker.getOPdistributionScore();
+        this.schedule = schedule;
+        this.jobsPerMonth = jobsPerMonth;
+        this.deficiencies = deficiencies;
+    }
+
+    @Getter
+    public static class Day {
+        private final LocalDate date;
+        private final Map<String, List<String>> jobs; // doctor names by job name
+
+        Day(LocalDate date, Map<String, List<String>> jobs) {
+            this.date = date;
+            this.jobs = jobs;
+        }
+    }
+
+    public enum DeficiencyType { EMPTY_JOB, DOCTOR_NOT_WORKING }
+
+    /**
+     * An empty job has the reasons of every doctor who could not take it, a doctor who is not working has the
+     * reasons for every job.
+     */
+    @Getter
+    public static class Deficiency {
+        private final DeficiencyType type;
+        private final LocalDate date;
+        private final String job; // null for a doctor not working
+        private final String doctor; // null for an empty job
+        private final Map<String, List<String>> reasons;
+
+        Deficiency(DeficiencyType type, LocalDate date, String job, String doctor,
+                   Map<String, List<String>> reasons) {
+            this.type = type;
+            this.date = date;
+            this.job = job;
+            this.doctor = doctor;
+            this.reasons = reasons;
+        }
+    }
+}
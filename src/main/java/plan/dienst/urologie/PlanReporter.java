@@ -0,0 +1,98 @@
+package plan.dienst.urologie;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Makes the PlanReport of a plan, with the same numbers and deficiencies as PlanBuilder.printDoctorStats.
+ */
+@Component
+public class PlanReporter {
+
+    private final Jobs jobs;
+    private final Doctors doctors;
+    private final DataFinder dataFinder;
+    private final Statistics statistics;
+    private final PlanBuilder planBuilder;
+
+    public PlanReporter(Jobs jobs, Doctors doctors, DataFinder dataFinder, Statistics statistics,
+                        PlanBuilder planBuilder) {
+        this.jobs = jobs;
+        this.doctors = doctors;
+        this.dataFinder = dataFinder;
+        this.statistics = statistics;
+        this.planBuilder = planBuilder;
+    }
+
+    public PlanReport report(Dienstplan dienstplan, int year, int quartil) {
+        planBuilder.explain(dienstplan);
+        ScoreTracker tracker = statistics.track(dienstplan, year, quartil);
+        tracker.detach();
+        LocalDate firstOfQuarter = LocalDate.of(year, quartil * 3 - 2, 1);
+        return new PlanReport(year, quartil, tracker, getSchedule(dienstplan),
+                getJobsPerMonth(dienstplan, firstOfQuarter), getDeficiencies(dienstplan, firstOfQuarter));
+    }
+
+    private List<PlanReport.Day> getSchedule(Dienstplan dienstplan) {
+        List<PlanReport.Day> schedule = new ArrayList<>();
+        for (LocalDate date : dienstplan.getDates()) {
+            Map<String, List<String>> assigned = new LinkedHashMap<>();
+            for (Job job : jobs.getAllJobs()) assigned.put(job.getName(), docNames(dienstplan.getAssignedDoctors(date, job)));
+            assigned.put(jobs.getUrlaub().getName(), docNames(dienstplan.getAssignedDoctors(date, jobs.getUrlaub())));
+            schedule.add(new PlanReport.Day(date, assigned));
+        }
+        return schedule;
+    }
+
+    private Map<String, Map<String, List<Integer>>> getJobsPerMonth(Dienstplan dienstplan, LocalDate firstOfQuarter) {
+        Map<String, Map<String, List<Integer>>> jobsPerMonth = new LinkedHashMap<>();
+        for (Doctor doctor : doctors.getAllDoctors()) {
+            Map<String, List<Integer>> perJob = new LinkedHashMap<>();
+            for (Job job : jobs.getAllJobs()) {
+                List<Integer> months = new ArrayList<>();
+                for (int month = 0; month < 3; month++)
+                    months.add(dataFinder.getTimesDoctorScheduledThisMonth(dienstplan, firstOfQuarter.plusMonths(month), doctor, job));
+                perJob.put(job.getName(), months);
+            }
+            jobsPerMonth.put(doctor.getName(), perJob);
+        }
+        return jobsPerMonth;
+    }
+
+    // as in PlanBuilder.printPlanDeficiencies, for every day of the quarter
+    private List<PlanReport.Deficiency> getDeficiencies(Dienstplan dienstplan, LocalDate firstOfQuarter) {
+        List<PlanReport.Deficiency> deficiencies = new ArrayList<>();
+        Explanations explanations = dienstplan.getExplanations();
+        for (LocalDate date = firstOfQuarter; !date.isAfter(dienstplan.getEndDate()); date = date.plusDays(1)) {
+            Set<Doctor> docsAssigned = new HashSet<>(dienstplan.getAssignedDoctors(date, jobs.getUrlaub()));
+            for (Job job : jobs.getAllJobs()) {
+                List<Doctor> assigned = dienstplan.getAssignedDoctors(date, job);
+                docsAssigned.addAll(assigned);
+                if (!job.getVerfugbareTage().contains(date.getDayOfWeek()) || !assigned.isEmpty()) continue;
+                Map<String, List<String>> reasons = new LinkedHashMap<>();
+                explanations.getExplanations(date, job, planBuilder.getLocale())
+                        .forEach((doc, texts) -> reasons.put(doc.getName(), texts));
+                deficiencies.add(new PlanReport.Deficiency(PlanReport.DeficiencyType.EMPTY_JOB, date,
+                        job.getName(), null, reasons));
+            }
+            if (Dates.isWeekend(date)) continue;
+            for (Doctor doc : doctors.getAllDoctors()) {
+                if (docsAssigned.contains(doc) || dienstplan.isDoctorWorking(date.minusDays(1), jobs.getDienst(), doc)
+                        || !(doc.getVerfugbareTage().contains(date.getDayOfWeek())
+                        || doc.getVerfugbareTageDienst().contains(date.getDayOfWeek()))) continue;
+                Map<String, List<String>> reasons = new LinkedHashMap<>();
+                for (Job job : jobs.getAllJobs())
+                    reasons.put(job.getName(), explanations.getExplanations(date, job, doc, planBuilder.getLocale()));
+                deficiencies.add(new PlanReport.Deficiency(PlanReport.DeficiencyType.DOCTOR_NOT_WORKING, date,
+                        null, doc.getName(), reasons));
+            }
+        }
+        return deficiencies;
+    }
+
+    private List<String> docNames(List<Doctor> assigned) {
+        return assigned.stream().map(Doctor::getName).toList();
+    }
+}
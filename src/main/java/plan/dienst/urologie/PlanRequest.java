@@ -0,0 +1,86 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The body of POST /api/plans. The search limits are optional; a missing limit uses the planner.search
+ * properties, 0 turns it off as in PlanSearch.Builder. The roster is optional too: with one the plan is made for
+ * its doctors and jobs, which have the fields of the roster file, instead of those of planner.roster.
+ */
+@Getter
+@Setter
+public class PlanRequest {
+
+    private int year;
+    private int quarter;
+    private List<PresetRequest> presets = new ArrayList<>();
+    private Long seed;
+    private Long searchMillis;
+    private Long maxRestarts;
+    private Double targetScore;
+    private Long stallRestarts;
+    private Long stallMillis;
+    private RosterRequest roster;
+
+    @Getter
+    @Setter
+    public static class PresetRequest {
+        private String job;
+        private String doctor;
+        private LocalDate date;
+    }
+
+    @Getter
+    @Setter
+    public static class RosterRequest {
+        private List<Doctor> doctors = new ArrayList<>();
+        private List<Job> jobs = new ArrayList<>();
+    }
+
+    // the roster is checked by Jobs and Doctors, which throw IllegalArgumentException for a missing job or name
+    public Roster toRoster() {
+        if (roster.doctors == null || roster.doctors.isEmpty()) throw new IllegalArgumentException("a roster needs doctors");
+        if (roster.jobs == null) throw new IllegalArgumentException("a roster needs jobs");
+        for (Doctor doctor : roster.doctors)
+            if (doctor == null || doctor.getName() == null) throw new IllegalArgumentException("a doctor needs a name");
+        for (Job job : roster.jobs)
+            if (job == null || job.getName() == null) throw new IllegalArgumentException("a job needs a name");
+        return new Roster(roster.doctors, roster.jobs);
+    }
+
+    // job and doctor names are checked here, so that a typo is a bad request and not a failed job
+    public Presets toPresets(Jobs jobs, Doctors doctors) {
+        if (quarter < 1 || quarter > 4) throw new IllegalArgumentException("quarter must be 1 to 4: " + quarter);
+        LocalDate first = Dates.getStartDate(year, quarter);
+        LocalDate last = Dates.getEndDate(year, quarter);
+        Presets.Builder builder = new Presets.Builder(year);
+        for (PresetRequest preset : presets) {
+            if (preset.job == null || preset.doctor == null || preset.date == null)
+                throw new IllegalArgumentException("a preset needs job, doctor and date");
+            if (preset.date.isBefore(first) || preset.date.isAfter(last))
+                throw new IllegalArgumentException("preset date " + preset.date + " is not in " + year + " Q" + quarter);
+            builder.add(jobs.getJob(preset.job).getName(), doctors.getDoctor(preset.doctor).getName(), preset.date);
+        }
+        return builder.build();
+    }
+
+    // the time budget is capped at maxSearchMillis, so that no request holds a worker for ever
+    public PlanSearch.Builder toSearch(PlanBuilder planBuilder, Presets presets, long maxSearchMillis) {
+        long millis = searchMillis != null ? searchMillis : planBuilder.getSearchMillis();
+        if (millis <= 0 || millis > maxSearchMillis) millis = maxSearchMillis;
+        return new PlanSearch.Builder(planBuilder, presets, year, quarter)
+                .seed(seed != null ? seed : planBuilder.getSeed())
+                .keepBest(planBuilder.getKeepBest())
+                .timeBudget(Duration.ofMillis(millis))
+                .maxRestarts(maxRestarts != null ? maxRestarts : planBuilder.getMaxRestarts())
+                .targetScore(targetScore != null ? targetScore : planBuilder.getTargetScore())
+                .stallRestarts(stallRestarts != null ? stallRestarts : planBuilder.getStallRestarts())
+                .stallTime(Duration.ofMillis(stallMillis != null ? stallMillis : planBuilder.getStallMillis()));
+    }
+}
@@ -0,0 +1,310 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Restarts PlanBuilder.makePlan until a stopping rule is met: the time budget, the number of restarts, a target
+ * score, or no improvement for a number of restarts or for some time. Progress is printed while it runs.
+ * The best plan so far can be taken at any moment with getBest, and stop ends the search early from any thread.
+ */
+public class PlanSearch {
+
+    public enum StopReason { TIME_BUDGET, MAX_RESTARTS, TARGET_SCORE, NO_IMPROVEMENT, STOPPED, FAILED }
+
+    private final PlanBuilder planBuilder;
+    private final Presets presets;
+    private final int jahr;
+    private final int quartil;
+    private final Carryover carryover; // null for a quarter planned alone
+    @Getter
+    private final long runSeed;
+    private final int parallelism;
+    private final long timeBudgetNanos;
+    private final long maxRestarts;
+    private final double targetScore;
+    private final long stallRestarts;
+    private final long stallNanos;
+    private final long progressNanos;
+
+    /*
+    Only the seeds of the best plans are kept. Restart i uses a seed derived from the run seed and i, and plans with
+    the same score are ordered by their seeds, so with a limit on the restarts the result doesn't depend on which
+    thread ran which restart or which finished first. A plan is rebuilt from its seed when it's needed.
+     */
+    @Getter
+    private final TopK<Long> bestSeeds;
+    private final AtomicLong nextRestart = new AtomicLong();
+    private final AtomicLong finished = new AtomicLong();
+    private volatile long startNanos;
+    private double bestScore = Double.POSITIVE_INFINITY;
+    private long bestSeed;
+    private volatile long lastImprovementNanos;
+    private volatile long restartsAtLastImprovement;
+    private volatile long improvements;
+    @Getter
+    private volatile StopReason stopReason;
+
+    private PlanSearch(Builder builder) {
+        planBuilder = builder.planBuilder;
+        presets = builder.presets;
+        jahr = builder.jahr;
+        quartil = builder.quartil;
+        carryover = builder.carryover;
+        runSeed = builder.seed != 0 ? builder.seed : System.nanoTime();
+        parallelism = builder.parallelism;
+        timeBudgetNanos = builder.timeBudget.toNanos();
+        maxRestarts = builder.maxRestarts;
+        targetScore = builder.targetScore;
+        stallRestarts = builder.stallRestarts;
+        stallNanos = builder.stallTime.toNanos();
+        progressNanos = builder.progressInterval.toNanos();
+        bestSeeds = new TopK<>(builder.keepBest, Comparator.naturalOrder());
+        nextRestart.set(builder.firstRestart);
+        if (builder.resumeScore != null) {
+            bestScore = builder.resumeScore;
+            bestSeed = builder.resumeSeed;
+            bestSeeds.offer(bestSeed, bestScore);
+        }
+    }
+
+    /**
+     * Searches until a stopping rule is met or stop is called.
+     * @return the seeds and scores of the best plans, best first
+     */
+    public List<TopK.Entry<Long>> run() {
+        startNanos = System.nanoTime();
+        lastImprovementNanos = startNanos;
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) results.add(workers.submit(this::restartUntilStopped));
+        workers.shutdown();
+        try {
+            while (!workers.awaitTermination(progressNanos, TimeUnit.NANOSECONDS)) printProgress();
+            for (Future<?> result : results) result.get();
+        } catch (InterruptedException e) {
+            stop();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Plan search was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Plan search failed", e.getCause());
+        }
+        printProgress();
+        System.out.println("search stopped: " + stopReason);
+        return bestSeeds.getEntries();
+    }
+
+    public void stop() {
+        stop(StopReason.STOPPED);
+    }
+
+    /**
+     * @return the best plan found so far, rebuilt from its seed, or null if no restart has finished yet
+     * @throws IllegalStateException if the rebuilt plan doesn't have the score the search found, that is if
+     * makePlan doesn't give the same plan for the same seed
+     */
+    public Dienstplan getBest() {
+        long seed;
+        double score;
+        synchronized (this) {
+            if (bestScore == Double.POSITIVE_INFINITY) return null;
+            seed = bestSeed;
+            score = bestScore;
+        }
+        Dienstplan best = planBuilder.makePlan(presets, jahr, quartil, seed, carryover);
+        if (Double.compare(best.getScore(), score) != 0)
+            throw new IllegalStateException("Seed " + seed + " rebuilt a plan with score " + best.getScore()
+                    + " instead of " + score);
+        return best;
+    }
+
+    public synchronized double getBestScore() {
+        return bestScore;
+    }
+
+    // how often the best plan has changed, so that watchers can tell whether there is a new one
+    public long getImprovements() {
+        return improvements;
+    }
+
+    // the restart the search would go on with, for resuming it later
+    public long getNextRestart() {
+        long next = nextRestart.get();
+        return maxRestarts > 0 ? Math.min(next, maxRestarts) : next;
+    }
+
+    public long getRestarts() {
+        return finished.get();
+    }
+
+    public Duration getElapsed() {
+        return startNanos == 0 ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    public Duration getSinceLastImprovement() {
+        return startNanos == 0 ? Duration.ZERO : Duration.ofNanos(System.nanoTime() - lastImprovementNanos);
+    }
+
+    private void restartUntilStopped() {
+        try {
+            while (stopReason == null) {
+                long restart = nextRestart.getAndIncrement();
+                if (maxRestarts > 0 && restart >= maxRestarts) {
+                    stop(StopReason.MAX_RESTARTS);
+                    return;
+                }
+                long seed = PlanBuilder.restartSeed(runSeed, restart);
+                double score = planBuilder.makePlan(presets, jahr, quartil, seed, carryover).getScore();
+                long done = finished.incrementAndGet();
+                if (bestSeeds.offer(seed, score)) improved(seed, score, done);
+                checkStoppingRules(done);
+            }
+        } catch (RuntimeException e) {
+            stop(StopReason.FAILED);
+            throw e;
+        }
+    }
+
+    private synchronized void improved(long seed, double score, long done) {
+        // the lower seed wins a tie, as in bestSeeds
+        if (score > bestScore || score == bestScore && seed >= bestSeed) return;
+        bestScore = score;
+        bestSeed = seed;
+        lastImprovementNanos = System.nanoTime();
+        restartsAtLastImprovement = done;
+        improvements++;
+        if (score <= targetScore) stop(StopReason.TARGET_SCORE);
+    }
+
+    private void checkStoppingRules(long done) {
+        long now = System.nanoTime();
+        if (timeBudgetNanos > 0 && now - startNanos >= timeBudgetNanos) stop(StopReason.TIME_BUDGET);
+        else if (stallRestarts > 0 && done - restartsAtLastImprovement >= stallRestarts) stop(StopReason.NO_IMPROVEMENT);
+        else if (stallNanos > 0 && now - lastImprovementNanos >= stallNanos) stop(StopReason.NO_IMPROVEMENT);
+    }
+
+    private synchronized void stop(StopReason reason) {
+        if (stopReason == null) stopReason = reason;
+    }
+
+    private void printProgress() {
+        double seconds = getElapsed().toNanos() / 1e9;
+        System.out.printf("%d restarts, %.0f/s, best score %.2f, last improvement %.1fs ago%n",
+                getRestarts(), getRestarts() / Math.max(seconds, 1e-9), getBestScore(),
+                getSinceLastImprovement().toNanos() / 1e9);
+    }
+
+    /**
+     * A limit of 0 means no limit. Without any limit the search runs until stop is called.
+     */
+    @Getter
+    public static class Builder {
+        private final PlanBuilder planBuilder;
+        private final Presets presets;
+        private final int jahr;
+        private final int quartil;
+        private long seed;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private int keepBest = 5;
+        private Duration timeBudget = Duration.ZERO;
+        private long maxRestarts;
+        private double targetScore; // 0 is the best possible score
+        private long stallRestarts;
+        private Duration stallTime = Duration.ZERO;
+        private Duration progressInterval = Duration.ofSeconds(5);
+        private long firstRestart;
+        private long resumeSeed;
+        private Double resumeScore;
+        private Carryover carryover;
+
+        public Builder(PlanBuilder planBuilder, Presets presets, int jahr, int quartil) {
+            this.planBuilder = planBuilder;
+            this.presets = presets;
+            this.jahr = jahr;
+            this.quartil = quartil;
+        }
+
+        // 0 for a new seed every run
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder keepBest(int keepBest) {
+            this.keepBest = keepBest;
+            return this;
+        }
+
+        public Builder timeBudget(Duration timeBudget) {
+            this.timeBudget = timeBudget;
+            return this;
+        }
+
+        public Builder maxRestarts(long maxRestarts) {
+            this.maxRestarts = maxRestarts;
+            return this;
+        }
+
+        public Builder targetScore(double targetScore) {
+            this.targetScore = targetScore;
+            return this;
+        }
+
+        // stop after this many restarts without a better plan
+        public Builder stallRestarts(long stallRestarts) {
+            this.stallRestarts = stallRestarts;
+            return this;
+        }
+
+        // stop after this long without a better plan
+        public Builder stallTime(Duration stallTime) {
+            this.stallTime = stallTime;
+            return this;
+        }
+
+        public Builder progressInterval(Duration progressInterval) {
+            this.progressInterval = progressInterval;
+            return this;
+        }
+
+        /**
+         * Goes on with an earlier search with the same run seed: the restarts start after the ones it made, and
+         * its best plan is the best so far.
+         */
+        public Builder resume(long runSeed, long firstRestart, long bestSeed, double bestScore) {
+            this.seed = runSeed;
+            this.firstRestart = firstRestart;
+            this.resumeSeed = bestSeed;
+            this.resumeScore = bestScore;
+            return this;
+        }
+
+        // plans the quarter after the one the carryover was made from
+        public Builder carryover(Carryover carryover) {
+            this.carryover = carryover;
+            return this;
+        }
+
+        public PlanSearch build() {
+            if (parallelism < 1) throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+            if (progressInterval.isZero() || progressInterval.isNegative())
+                throw new IllegalArgumentException("progress interval must be positive: " + progressInterval);
+            return new PlanSearch(this);
+        }
+    }
+}
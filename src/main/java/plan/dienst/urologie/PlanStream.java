@@ -0,0 +1,155 @@
+package plan.dienst.urologie;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the best plan of a running job to its subscribers as server-sent events. Each subscriber is looked at
+ * once per interval, and only the newest best plan is sent, so however often the search improves there is at
+ * most one "plan" event per interval. The subscribers of a job share its best plan, which is rebuilt once per
+ * improvement. When the job ends a last "done" event has the final plan. A stream is closed after timeoutMillis,
+ * so clients of a job that never ends don't hold a connection forever.
+ */
+@Component
+public class PlanStream {
+
+    private final long intervalMillis;
+    private final long timeoutMillis;
+    private final Map<PlanJob, Best> bests = new HashMap<>(); // guarded by this
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "plan-stream"));
+
+    public PlanStream(@Value("${planner.api.stream-millis:1000}") long intervalMillis,
+                      @Value("${planner.api.stream-timeout-millis:1800000}") long timeoutMillis) {
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public SseEmitter subscribe(PlanJob job) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(job, emitter, join(job));
+        subscriber.future = scheduler.scheduleWithFixedDelay(subscriber::send, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        emitter.onCompletion(subscriber::cancel);
+        emitter.onTimeout(subscriber::cancel);
+        emitter.onError(error -> subscriber.cancel());
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // the best plan of a running job and its score, only read and written on the scheduler thread
+    private static class Best {
+        private int subscribers; // guarded by PlanStream
+        private long improvements = -1;
+        private Dienstplan plan;
+        private ScoreTracker tracker;
+    }
+
+    private synchronized Best join(PlanJob job) {
+        Best best = bests.computeIfAbsent(job, j -> new Best());
+        best.subscribers++;
+        return best;
+    }
+
+    private synchronized void leave(PlanJob job, Best best) {
+        if (--best.subscribers == 0) bests.remove(job);
+    }
+
+    private class Subscriber {
+        private final PlanJob job;
+        private final SseEmitter emitter;
+        private final Best best;
+        private ScheduledFuture<?> future;
+        private boolean left;
+        private long improvementsSent = -1;
+        private Dienstplan sent; // the plan of the last event
+
+        Subscriber(PlanJob job, SseEmitter emitter, Best best) {
+            this.job = job;
+            this.emitter = emitter;
+            this.best = best;
+        }
+
+        void send() {
+            try {
+                if (job.hasEnded()) {
+                    Dienstplan plan = job.getPlan();
+                    if (plan != null) emitter.send(SseEmitter.event().name("done").data(update(plan, track(plan))));
+                    else emitter.send(SseEmitter.event().name("done").data(job));
+                    emitter.complete();
+                    cancel();
+                    return;
+                }
+                long improvements = job.search.getImprovements();
+                if (improvements == improvementsSent) return;
+                if (improvements != best.improvements) {
+                    Dienstplan plan = job.search.getBest();
+                    if (plan == null) return;
+                    best.improvements = improvements;
+                    best.plan = plan;
+                    best.tracker = track(plan);
+                }
+                improvementsSent = improvements;
+                emitter.send(SseEmitter.event().name("plan").data(update(best.plan, best.tracker)));
+            } catch (IOException | IllegalStateException e) {
+                // the client went away
+                cancel();
+            }
+        }
+
+        void cancel() {
+            if (future != null) future.cancel(false);
+            synchronized (this) {
+                if (left) return;
+                left = true;
+            }
+            leave(job, best);
+        }
+
+        private ScoreTracker track(Dienstplan plan) {
+            ScoreTracker tracker = job.planner.getStatistics().track(plan, job.getYear(), job.getQuarter());
+            tracker.detach();
+            return tracker;
+        }
+
+        private PlanUpdate update(Dienstplan plan, ScoreTracker tracker) {
+            PlanUpdate update = new PlanUpdate(job, tracker, changes(job.planner.getJobs(), sent, plan));
+            sent = plan;
+            return update;
+        }
+    }
+
+    // what changed from one plan to the next, everything if there is no previous plan
+    private List<PlanUpdate.Change> changes(Jobs jobs, Dienstplan before, Dienstplan after) {
+        List<PlanUpdate.Change> changes = new ArrayList<>();
+        List<Job> allJobs = new ArrayList<>(jobs.getAllJobs());
+        allJobs.add(jobs.getUrlaub());
+        for (LocalDate date : after.getDates()) {
+            for (Job job : allJobs) {
+                List<Doctor> now = after.getAssignedDoctors(date, job);
+                List<Doctor> then = before == null ? List.of() : before.getAssignedDoctors(date, job);
+                if (now.equals(then)) continue;
+                changes.add(new PlanUpdate.Change(date, job.getName(),
+                        now.stream().filter(doctor -> !then.contains(doctor)).map(Doctor::getName).toList(),
+                        then.stream().filter(doctor -> !now.contains(doctor)).map(Doctor::getName).toList()));
+            }
+        }
+        return changes;
+    }
+}
@@ -0,0 +1,51 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One event of the plan stream: a new best plan as its score components and the assignments that changed since
+ * the plan of the previous event. The first event lists every assignment.
+ */
+@Getter
+public class PlanUpdate {
+
+    private final PlanJob.Status status;
+    private final long restarts;
+    private final long elapsedMillis;
+    private final double score;
+    private final int emptyJobs;
+    private final int doctorsNotWorking;
+    private final double shiftDistributionScore;
+    private final double opDistributionScore;
+    private final List<Change> changes;
+
+    PlanUpdate(PlanJob job, ScoreTracker tracker, List<Change> changes) {
+        status = job.getStatus();
+        restarts = job.getRestarts();
+        elapsedMillis = job.search.getElapsed().toMillis();
+        score = tracker.getScore();
+        emptyJobs = tracker.getEmptyJobs();
+        doctorsNotWorking = tracker.getDoctorsNotWorking();
+        shiftDistributionScore = tracker.getShiftDistributionScore();
+        opDistributionScore = tracker.getOPdistributionScore();
+        this.changes = changes;
+    }
+
+    @Getter
+    public static class Change {
+        private final LocalDate date;
+        private final String job;
+        private final List<String> added;
+        private final List<String> removed;
+
+        Change(LocalDate date, String job, List<String> added, List<String> removed) {
+            this.date = date;
+            this.job = job;
+            this.added = added;
+            this.removed = removed;
+        }
+    }
+}
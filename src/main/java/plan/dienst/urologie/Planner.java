@@ -0,0 +1,77 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * The components that plan for one roster. The bean is that of planner.roster; forRoster wires the same
+ * components for another roster, e.g. one sent with a PlanRequest, with the settings of this one.
+ */
+@Component
+@Getter
+public class Planner {
+
+    private final Jobs jobs;
+    private final Doctors doctors;
+    private final DayJobDecider dayJobDecider;
+    private final ShiftDecider shiftDecider;
+    private final Statistics statistics;
+    private final PlanBuilder planBuilder;
+    private final LocalSearch localSearch;
+    private final PlanReporter planReporter;
+    private final PlanMetrics planMetrics;
+
+    @Autowired
+    public Planner(Jobs jobs, Doctors doctors, DayJobDecider dayJobDecider, ShiftDecider shiftDecider,
+                   Statistics statistics, PlanBuilder planBuilder, LocalSearch localSearch, PlanReporter planReporter,
+                   PlanMetrics planMetrics) {
+        this.jobs = jobs;
+        this.doctors = doctors;
+        this.dayJobDecider = dayJobDecider;
+        this.shiftDecider = shiftDecider;
+        this.statistics = statistics;
+        this.planBuilder = planBuilder;
+        this.localSearch = localSearch;
+        this.planReporter = planReporter;
+        this.planMetrics = planMetrics;
+    }
+
+    private Planner(Roster roster, Planner settings) {
+        jobs = new Jobs(roster);
+        doctors = new Doctors(roster);
+        planMetrics = settings.planMetrics;
+        DataFinder dataFinder = new DataFinder(jobs);
+        dayJobDecider = new DayJobDecider(jobs, doctors, dataFinder, settings.dayJobDecider.getRules().getOrder());
+        shiftDecider = new ShiftDecider(jobs, dataFinder, settings.shiftDecider.getRules().getOrder());
+        statistics = new Statistics(jobs, doctors, dataFinder);
+        localSearch = new LocalSearch(jobs, doctors, dayJobDecider, shiftDecider, statistics);
+        localSearch.setTimeBudgetMillis(settings.localSearch.getTimeBudgetMillis());
+        localSearch.setStartTemperature(settings.localSearch.getStartTemperature());
+        localSearch.setEndTemperature(settings.localSearch.getEndTemperature());
+        planBuilder = new PlanBuilder(jobs, doctors, dataFinder, dayJobDecider, shiftDecider,
+                new ShiftOrganizer(shiftDecider, doctors, jobs, dataFinder, planMetrics), statistics, localSearch,
+                planMetrics);
+        PlanBuilder from = settings.planBuilder;
+        planBuilder.setParallelism(from.getParallelism());
+        planBuilder.setLocale(from.getLocale());
+        planBuilder.setKeepBest(from.getKeepBest());
+        planBuilder.setSeed(from.getSeed());
+        planBuilder.setSearchMillis(from.getSearchMillis());
+        planBuilder.setMaxRestarts(from.getMaxRestarts());
+        planBuilder.setTargetScore(from.getTargetScore());
+        planBuilder.setStallRestarts(from.getStallRestarts());
+        planBuilder.setStallMillis(from.getStallMillis());
+        planBuilder.setRepairSteps(from.getRepairSteps());
+        planBuilder.setMostConstrainedFirst(from.isMostConstrainedFirst());
+        planReporter = new PlanReporter(jobs, doctors, dataFinder, statistics, planBuilder);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the roster lacks a job the planner needs or has two doctors or jobs
+     * of the same name
+     */
+    public Planner forRoster(Roster roster) {
+        return new Planner(roster, this);
+    }
+}
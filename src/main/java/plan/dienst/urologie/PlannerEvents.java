@@ -0,0 +1,79 @@
+package plan.dienst.urologie;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of the planner, so that its phases show up next to GC and CPU samples in JMC.
+ * They cost nothing while no recording has them enabled. Record them with
+ * -XX:StartFlightRecording; RuleEvaluation events also need planner.jfr.rule-sample-every.
+ */
+public final class PlannerEvents {
+
+    private PlannerEvents() {
+    }
+
+    @Name("plan.dienst.urologie.Restart")
+    @Label("Plan Restart")
+    @Description("One plan made by PlanBuilder.makePlan")
+    @Category({"Urologie", "Planner"})
+    @StackTrace(false)
+    public static class Restart extends Event {
+        @Label("Seed")
+        long seed;
+        @Label("Year")
+        int year;
+        @Label("Quarter")
+        int quarter;
+        @Label("Score")
+        double score;
+    }
+
+    @Name("plan.dienst.urologie.ShiftWeek")
+    @Label("Dienst Week")
+    @Description("ShiftOrganizer filling the Dienste of a week with 3 doctors, see WeekShifts")
+    @Category({"Urologie", "Planner", "Dienst"})
+    @StackTrace(false)
+    public static class ShiftWeek extends Event {
+        @Label("Sunday")
+        String sunday;
+        @Label("Search Steps")
+        int steps;
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("plan.dienst.urologie.IndividualShifts")
+    @Label("Dienste One by One")
+    @Description("ShiftOrganizer.scheduleIndividually filling the Dienste the weeks left empty")
+    @Category({"Urologie", "Planner", "Dienst"})
+    @StackTrace(false)
+    public static class IndividualShifts extends Event {
+        @Label("First Day")
+        String firstDay;
+        @Label("Dienste Filled")
+        int filled;
+    }
+
+    @Name("plan.dienst.urologie.RuleEvaluation")
+    @Label("Rule Evaluation")
+    @Description("A sampled ConstraintChain.firstRejection call")
+    @Category({"Urologie", "Planner", "Rules"})
+    @StackTrace(false)
+    public static class RuleEvaluation extends Event {
+        @Label("Rules")
+        String rules;
+        @Label("Rejection")
+        String rejection; // null if the doctor can work
+        @Label("Doctor")
+        String doctor;
+        @Label("Job")
+        String job;
+        @Label("Date")
+        String date;
+    }
+}
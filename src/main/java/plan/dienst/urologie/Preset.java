@@ -7,11 +7,12 @@ import java.time.LocalDate;
 @Getter
 public class Preset {
 
-    private Jobs.JobName jobName;
-    private Doctors.DocName docName;
+    private String jobName;
+    private String docName;
     private LocalDate date;
 
-    public Preset(Jobs.JobName jobName, Doctors.DocName docName, LocalDate date) {
+    // the names of the job and the doctor, looked up in Jobs and Doctors in any case
+    public Preset(String jobName, String docName, LocalDate date) {
         this.jobName = jobName;
         this.docName = docName;
         this.date = date;
@@ -11,31 +11,50 @@ public class Presets {
 
     private List<Preset> presets = new ArrayList<>();
 
+    // the presets on the days from..to
+    public Presets between(LocalDate from, LocalDate to) {
+        Presets p = new Presets();
+        for (Preset preset : presets)
+            if (!preset.getDate().isBefore(from) && !preset.getDate().isAfter(to)) p.presets.add(preset);
+        return p;
+    }
+
     public static class Builder {
+        private final int year; // of the dates given as month and day
         private List<Preset> presets = new ArrayList<>();
-        public Builder dienst(Doctors.DocName doc, int monat, int tag) {
-            addJob(Jobs.JobName.DIENST, doc, monat, tag, monat, tag);
+
+        public Builder(int year) {
+            this.year = year;
+        }
+
+        public Builder dienst(String doc, int monat, int tag) {
+            addJob(Jobs.DIENST, doc, monat, tag, monat, tag);
+            return this;
+        }
+
+        public Builder dienst(String doc, int beginMonat, int beginTag, int endMonat, int endTag) {
+            addJob(Jobs.DIENST, doc, beginMonat, beginTag, endMonat, endTag);
             return this;
         }
 
-        public Builder dienst(Doctors.DocName doc, int beginMonat, int beginTag, int endMonat, int endTag) {
-            addJob(Jobs.JobName.DIENST, doc, beginMonat, beginTag, endMonat, endTag);
+        public Builder urlaub(String doc, int monat, int tag) {
+            addJob(Jobs.URLAUB, doc, monat, tag, monat, tag);
             return this;
         }
 
-        public Builder urlaub(Doctors.DocName doc, int monat, int tag) {
-            addJob(Jobs.JobName.URLAUB, doc, monat, tag, monat, tag);
+        public Builder urlaub(String doc, int beginMonat, int beginTag, int endMonat, int endTag) {
+            addJob(Jobs.URLAUB, doc, beginMonat, beginTag, endMonat, endTag);
             return this;
         }
 
-        public Builder urlaub(Doctors.DocName doc, int beginMonat, int beginTag, int endMonat, int endTag) {
-            addJob(Jobs.JobName.URLAUB, doc, beginMonat, beginTag, endMonat, endTag);
+        public Builder add(String jobName, String doc, LocalDate date) {
+            presets.add(new Preset(jobName, doc, date));
             return this;
         }
 
-        private Builder addJob(Jobs.JobName jobName, Doctors.DocName doc, int beginMonat, int beginTag, int endMonat, int endTag) {
-            LocalDate startDate = LocalDate.of(2024, beginMonat, beginTag);
-            LocalDate endDate = LocalDate.of(2024, endMonat, endTag);
+        private Builder addJob(String jobName, String doc, int beginMonat, int beginTag, int endMonat, int endTag) {
+            LocalDate startDate = LocalDate.of(year, beginMonat, beginTag);
+            LocalDate endDate = LocalDate.of(year, endMonat, endTag);
             for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
                 Preset preset = new Preset(jobName, doc, date);
                 presets.add(preset);
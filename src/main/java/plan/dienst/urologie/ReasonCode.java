@@ -0,0 +1,13 @@
+package plan.dienst.urologie;
+
+import java.util.Locale;
+
+/**
+ * Why a doctor can't do a job. Explanations only store the ordinal, the text is looked up when it is printed.
+ */
+public interface ReasonCode {
+
+    int ordinal();
+
+    String getText(Locale locale);
+}
@@ -0,0 +1,141 @@
+package plan.dienst.urologie;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts for one ConstraintChain how often each rule is evaluated and how often it rejects, per doctor, job and
+ * weekday, over all restarts and threads. Every sampleEvery-th call is timed rule by rule, which gives the
+ * average cost of each rule without reading the clock on every evaluation. A sampleEvery of 0 or less times nothing.
+ */
+public class RejectionProfile<R extends Enum<R>> {
+
+    private static final int DAYS = DayOfWeek.values().length;
+
+    private final R[] rules;
+    private final List<Doctor> doctors; // by id
+    private final List<Job> jobs; // by id
+    private final int sampleEvery;
+    private final LongAdder[] evaluations;
+    private final LongAdder[] rejections; // [rule][doctor][job][weekday]
+    private final LongAdder[] sampledNanos;
+    private final LongAdder[] sampledEvaluations;
+
+    public RejectionProfile(Class<R> ruleType, int sampleEvery, List<Doctor> doctors, List<Job> jobs) {
+        rules = ruleType.getEnumConstants();
+        this.sampleEvery = sampleEvery;
+        this.doctors = doctors;
+        this.jobs = jobs;
+        evaluations = adders(rules.length);
+        rejections = adders(rules.length * doctors.size() * jobs.size() * DAYS);
+        sampledNanos = adders(rules.length);
+        sampledEvaluations = adders(rules.length);
+    }
+
+    // the loop of ConstraintChain.firstRejection, counted
+    R firstRejection(R[] order, Constraint[] ordered, Dienstplan dienstplan, Doctor doctor, LocalDate date, Job job) {
+        boolean timed = sampleEvery > 0 && ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+        for (int i = 0; i < ordered.length; i++) {
+            int rule = order[i].ordinal();
+            long start = timed ? System.nanoTime() : 0;
+            boolean rejects = ordered[i].rejects(dienstplan, doctor, date, job);
+            if (timed) {
+                sampledNanos[rule].add(System.nanoTime() - start);
+                sampledEvaluations[rule].increment();
+            }
+            evaluations[rule].increment();
+            if (rejects) {
+                rejections[index(rule, doctor.getId(), job.getId(), date.getDayOfWeek().ordinal())].increment();
+                return order[i];
+            }
+        }
+        return null;
+    }
+
+    public long getEvaluations(R rule) {
+        return evaluations[rule.ordinal()].sum();
+    }
+
+    public long getRejections(R rule) {
+        long sum = 0;
+        for (int doc = 0; doc < doctors.size(); doc++)
+            for (int job = 0; job < jobs.size(); job++)
+                for (int day = 0; day < DAYS; day++) sum += rejections[index(rule.ordinal(), doc, job, day)].sum();
+        return sum;
+    }
+
+    public long getRejections(R rule, Doctor doctor, Job job, DayOfWeek day) {
+        return rejections[index(rule.ordinal(), doctor.getId(), job.getId(), day.ordinal())].sum();
+    }
+
+    // average time of one evaluation, from the timed calls
+    public double getMeanNanos(R rule) {
+        long sampled = sampledEvaluations[rule.ordinal()].sum();
+        return sampled == 0 ? 0 : (double) sampledNanos[rule.ordinal()].sum() / sampled;
+    }
+
+    /*
+    For independent checks the cheapest order evaluates the rule with the lowest cost per rejection first:
+    ascending mean time / rejection rate. Rules that never reject go last.
+     */
+    public List<R> getSuggestedOrder() {
+        List<R> used = new ArrayList<>();
+        for (R rule : rules) if (getEvaluations(rule) > 0) used.add(rule);
+        used.sort(Comparator.comparingDouble(rule -> {
+            double rate = (double) getRejections(rule) / getEvaluations(rule);
+            return rate == 0 ? Double.POSITIVE_INFINITY : getMeanNanos(rule) / rate;
+        }));
+        return used;
+    }
+
+    public void print(String title, List<R> order) {
+        System.out.println("\n" + title + " rule profile (order " + order + ")");
+        System.out.printf("%-26s%14s%12s%8s%10s%10s  %s%n", "rule", "evaluations", "rejections", "rate",
+                "ns/eval", "total ms", "most rejected (doctor job weekday)");
+        for (R rule : order) {
+            long evaluated = getEvaluations(rule);
+            long rejected = getRejections(rule);
+            if (evaluated == 0) continue;
+            System.out.printf("%-26s%14d%12d%7.1f%%%10.0f%10.0f  %s%n", rule.name(), evaluated, rejected,
+                    100.0 * rejected / evaluated, getMeanNanos(rule), getMeanNanos(rule) * evaluated / 1e6,
+                    mostRejected(rule));
+        }
+        // comma separated, as planner.rules.day-job-order and planner.rules.shift-order take it
+        System.out.println("suggested order " + String.join(",", getSuggestedOrder().stream().map(Enum::name).toList()));
+    }
+
+    private String mostRejected(R rule) {
+        long[] byDoctor = new long[doctors.size()], byJob = new long[jobs.size()], byDay = new long[DAYS];
+        for (int doc = 0; doc < doctors.size(); doc++)
+            for (int job = 0; job < jobs.size(); job++)
+                for (int day = 0; day < DAYS; day++) {
+                    long count = rejections[index(rule.ordinal(), doc, job, day)].sum();
+                    byDoctor[doc] += count;
+                    byJob[job] += count;
+                    byDay[day] += count;
+                }
+        return doctors.get(argMax(byDoctor)).getName() + " " + jobs.get(argMax(byJob)).getName() + " "
+                + DayOfWeek.values()[argMax(byDay)];
+    }
+
+    private static int argMax(long[] counts) {
+        int max = 0;
+        for (int i = 1; i < counts.length; i++) if (counts[i] > counts[max]) max = i;
+        return max;
+    }
+
+    private int index(int rule, int doctor, int job, int day) {
+        return ((rule * doctors.size() + doctor) * jobs.size() + job) * DAYS + day;
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+}
@@ -0,0 +1,40 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Profiles the rules of DayJobDecider and ShiftDecider when planner.profile.rejections is on, see
+ * RejectionProfile. Off by default, since every rule evaluation then updates a counter.
+ * With planner.jfr.rule-sample-every, a sample of the evaluations is also sent to JFR, see PlannerEvents.
+ */
+@Component
+public class RejectionProfiler {
+
+    private final DayJobDecider dayJobDecider;
+    private final ShiftDecider shiftDecider;
+    @Getter
+    private final boolean enabled;
+
+    public RejectionProfiler(DayJobDecider dayJobDecider, ShiftDecider shiftDecider, Doctors doctors, Jobs jobs,
+                             @Value("${planner.profile.rejections:false}") boolean enabled,
+                             @Value("${planner.profile.sample-every:64}") int sampleEvery,
+                             @Value("${planner.jfr.rule-sample-every:0}") int eventSampleEvery) {
+        this.dayJobDecider = dayJobDecider;
+        this.shiftDecider = shiftDecider;
+        this.enabled = enabled;
+        if (enabled) {
+            dayJobDecider.getRules().profile(sampleEvery, doctors, jobs);
+            shiftDecider.getRules().profile(sampleEvery, doctors, jobs);
+        }
+        dayJobDecider.getRules().sampleEvents(eventSampleEvery);
+        shiftDecider.getRules().sampleEvents(eventSampleEvery);
+    }
+
+    public void printReport() {
+        if (!enabled) return;
+        dayJobDecider.getRules().getProfile().print("DayJobDecider", dayJobDecider.getRules().getOrder());
+        shiftDecider.getRules().getProfile().print("ShiftDecider", shiftDecider.getRules().getOrder());
+    }
+}
@@ -0,0 +1,49 @@
+package plan.dienst.urologie;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The doctors and jobs of a department, read from the JSON file at planner.roster. The fields of each doctor and
+ * job are those of Doctor and Job; the ids are their positions in the file. Doctors and Jobs are made from it.
+ */
+@Component
+@Getter
+public class Roster {
+
+    private final List<Doctor> doctors;
+    private final List<Job> jobs;
+
+    @Autowired
+    public Roster(@Value("${planner.roster:classpath:roster.json}") Resource resource) {
+        ObjectMapper objectMapper = JsonMapper.builder().enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).build();
+        try (InputStream in = resource.getInputStream()) {
+            RosterFile file = objectMapper.readValue(in, RosterFile.class);
+            doctors = file.doctors;
+            jobs = file.jobs;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read the roster " + resource, e);
+        }
+    }
+
+    public Roster(List<Doctor> doctors, List<Job> jobs) {
+        this.doctors = doctors;
+        this.jobs = jobs;
+    }
+
+    private static class RosterFile {
+        public List<Doctor> doctors = new ArrayList<>();
+        public List<Job> jobs = new ArrayList<>();
+    }
+}
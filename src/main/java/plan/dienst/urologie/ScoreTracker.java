@@ -0,0 +1,188 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the components of Statistics.getScore up to date while a Dienstplan changes. Empty jobs and doctors not
+ * working are counted per day, the shift and OP distributions are kept as per-doctor totals for the quarter, plus
+ * the quarters before it if the plan has a Carryover.
+ * Each assignment costs O(1); the distributions are recomputed in O(doctors) the next time they are read.
+ * Create it with Statistics.track and detach it when the plan is finished.
+ */
+public class ScoreTracker implements DienstplanListener {
+
+    private final Jobs jobs;
+    private final Dienstplan dienstplan;
+    private final Job[] allJobs;
+    private final int[] jobIndex; // position in allJobs by Job id, -1 for Urlaub
+    private final List<Doctor> allDoctors;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final LocalDate firstOfQuarter;
+
+    private final boolean[] empty; // [day][job in allJobs]
+    private final boolean[] notWorking; // [day][doctor]
+    @Getter
+    private int emptyJobs;
+    @Getter
+    private int doctorsNotWorking;
+
+    // doctors with available days, as in Statistics
+    private final int[] counted; // position in the totals or -1, by Doctor id
+    private final int[] shifts;
+    private final double[] shiftsAvailable;
+    private final int[] ops;
+    private boolean distributionsChanged = true;
+    private double shiftDistributionScore;
+    private double opDistributionScore;
+
+    ScoreTracker(Jobs jobs, Doctors doctors, Dienstplan dienstplan, int year, int quartil) {
+        this.jobs = jobs;
+        this.dienstplan = dienstplan;
+        allJobs = jobs.getAllJobs().toArray(new Job[0]);
+        jobIndex = new int[jobs.size()];
+        Arrays.fill(jobIndex, -1);
+        for (int i = 0; i < allJobs.length; i++) jobIndex[allJobs[i].getId()] = i;
+        allDoctors = doctors.getAllDoctors();
+        counted = new int[allDoctors.size()];
+        startDate = dienstplan.getStartDate();
+        endDate = dienstplan.getEndDate();
+        firstOfQuarter = LocalDate.of(year, quartil * 3 - 2, 1);
+        int days = (int) (endDate.toEpochDay() - startDate.toEpochDay() + 1);
+        empty = new boolean[days * allJobs.length];
+        notWorking = new boolean[days * allDoctors.size()];
+        List<Doctor> docsWithAvailableDays = allDoctors.stream().filter(
+                doctor -> !doctor.getVerfugbareTage().isEmpty()).toList();
+        Arrays.fill(counted, -1);
+        shifts = new int[docsWithAvailableDays.size()];
+        shiftsAvailable = new double[shifts.length];
+        ops = new int[shifts.length];
+        for (int i = 0; i < docsWithAvailableDays.size(); i++) {
+            Doctor doc = docsWithAvailableDays.get(i);
+            counted[doc.getId()] = i;
+            shiftsAvailable[i] = doc.getMaxDiensteImMonat() * 3;
+            Carryover carryover = dienstplan.getCarryover();
+            if (carryover != null) {
+                shifts[i] = carryover.getDienste(doc);
+                shiftsAvailable[i] += doc.getMaxDiensteImMonat() * carryover.getMonths();
+                ops[i] = carryover.getOps(doc);
+            }
+        }
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            for (int job = 0; job < allJobs.length; job++) updateEmpty(date, job);
+            for (int doc = 0; doc < allDoctors.size(); doc++) updateNotWorking(date, doc);
+        }
+        for (LocalDate date = firstOfQuarter; !date.isAfter(endDate); date = date.plusDays(1)) {
+            for (Doctor doc : docsWithAvailableDays) {
+                if (dienstplan.isDoctorWorking(date, jobs.getDienst(), doc)) count(date, jobs.getDienst(), doc, 1);
+                if (dienstplan.isDoctorWorking(date, jobs.getOp(), doc)) count(date, jobs.getOp(), doc, 1);
+            }
+        }
+        dienstplan.addListener(this);
+    }
+
+    public void detach() {
+        dienstplan.removeListener(this);
+    }
+
+    // the same number as Statistics.getScore
+    public double getScore() {
+        return getOPdistributionScore();
+    }
+
+    // all four components, weighted as in Statistics.getScore
+    public double getWeightedScore() {
+        return emptyJobs * 100 + doctorsNotWorking * 20 + getShiftDistributionScore() * 10 + getOPdistributionScore();
+    }
+
+    public double getShiftDistributionScore() {
+        updateDistributions();
+        return shiftDistributionScore;
+    }
+
+    public double getOPdistributionScore() {
+        updateDistributions();
+        return opDistributionScore;
+    }
+
+    @Override
+    public void assigned(LocalDate date, Job job, Doctor doctor) {
+        changed(date, job, doctor, 1);
+    }
+
+    @Override
+    public void removed(LocalDate date, Job job, Doctor doctor) {
+        changed(date, job, doctor, -1);
+    }
+
+    private void changed(LocalDate date, Job job, Doctor doctor, int delta) {
+        int index = jobIndex[job.getId()];
+        if (index < 0) return; // Urlaub
+        int doc = doctor.getId();
+        updateEmpty(date, index);
+        updateNotWorking(date, doc);
+        if (job == jobs.getDienst()) updateNotWorking(date.plusDays(1), doc);
+        count(date, job, doctor, delta);
+    }
+
+    private void count(LocalDate date, Job job, Doctor doctor, int delta) {
+        if (date.isBefore(firstOfQuarter) || date.isAfter(endDate)) return;
+        int index = counted[doctor.getId()];
+        if (index < 0) return;
+        if (job == jobs.getDienst()) shifts[index] += delta;
+        else if (job == jobs.getOp()) ops[index] += delta;
+        else return;
+        distributionsChanged = true;
+    }
+
+    private void updateEmpty(LocalDate date, int job) {
+        int day = dayIndex(date);
+        if (day < 0) return;
+        boolean isEmpty = !dienstplan.isAssigned(date, allJobs[job]);
+        int cell = day * allJobs.length + job;
+        if (isEmpty != empty[cell]) emptyJobs += isEmpty ? 1 : -1;
+        empty[cell] = isEmpty;
+    }
+
+    // as in Statistics.doctorsNotWorking
+    private void updateNotWorking(LocalDate date, int doc) {
+        int day = dayIndex(date);
+        if (day < 0) return;
+        Doctor doctor = allDoctors.get(doc);
+        boolean isNotWorking = !Dates.isWeekend(date)
+                && !dienstplan.isDoctorWorking(date.minusDays(1), jobs.getDienst(), doctor)
+                && (doctor.getVerfugbareTage().contains(date.getDayOfWeek())
+                || doctor.getVerfugbareTageDienst().contains(date.getDayOfWeek()))
+                && !dienstplan.isDoctorWorkingAny(date, doctor, allJobs);
+        int cell = day * allDoctors.size() + doc;
+        if (isNotWorking != notWorking[cell]) doctorsNotWorking += isNotWorking ? 1 : -1;
+        notWorking[cell] = isNotWorking;
+    }
+
+    // sums of the distances from the average, as in Statistics.getShiftDistribution and getOPdistribution
+    private void updateDistributions() {
+        if (!distributionsChanged) return;
+        double shiftSum = 0, opSum = 0;
+        for (int i = 0; i < shifts.length; i++) {
+            shiftSum += shifts[i] / shiftsAvailable[i];
+            opSum += ops[i];
+        }
+        double shiftAverage = shiftSum / shifts.length, opAverage = opSum / ops.length;
+        shiftDistributionScore = 0;
+        opDistributionScore = 0;
+        for (int i = 0; i < shifts.length; i++) {
+            shiftDistributionScore += Math.abs(shifts[i] / shiftsAvailable[i] - shiftAverage);
+            opDistributionScore += Math.abs(ops[i] - opAverage);
+        }
+        distributionsChanged = false;
+    }
+
+    private int dayIndex(LocalDate date) {
+        if (date.isBefore(startDate) || date.isAfter(endDate)) return -1;
+        return (int) (date.toEpochDay() - startDate.toEpochDay());
+    }
+}
@@ -1,68 +1,63 @@
 package plan.dienst.urologie;
 
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static java.time.DayOfWeek.*;
+import static plan.dienst.urologie.ShiftRule.*;
 
 @Component
 public class ShiftDecider {
 
     private final Jobs jobs;
     private final DataFinder dataFinder;
-    private final Explanations explanations;
 
-    public ShiftDecider(Jobs jobs, DataFinder dataFinder, Explanations explanations) {
+    /*
+    Same pipeline as DayJobDecider: bit tests first, the monthly counters last. planner.rules.shift-order
+    puts other rules first.
+     */
+    @Getter
+    private final ConstraintChain<ShiftRule> rules = new ConstraintChain<>(ShiftRule.class);
+
+    public ShiftDecider(Jobs jobs, DataFinder dataFinder) {
+        this(jobs, dataFinder, List.of());
+    }
+
+    /**
+     * @param order the rules evaluated first, in this order; empty for the order below
+     */
+    @Autowired
+    public ShiftDecider(Jobs jobs, DataFinder dataFinder, @Value("${planner.rules.shift-order:}") List<ShiftRule> order) {
         this.jobs = jobs;
         this.dataFinder = dataFinder;
-        this.explanations = explanations;
+        rules.add(SHIFT_TAKEN, (dienstplan, doctor, date, job) -> !isShiftAvailable(dienstplan, date))
+                .add(DAY_JOB_OR_VACATION, (dienstplan, doctor, date, job) ->
+                        !Dates.isWeekend(date) && !couldWorkOP(dienstplan, doctor, date))
+                .add(TOO_MANY_WEEKEND_SHIFTS, (dienstplan, doctor, date, job) ->
+                        Dates.isWeekend(date) && hasWorkedTooManyWeekendShiftsThisMonth(dienstplan, doctor, date))
+                .add(TOO_MANY_SHIFTS, (dienstplan, doctor, date, job) ->
+                        hasWorkedTooManyShiftsThisMonth(dienstplan, doctor, date))
+                .add(SHIFT_DAY_BEFORE, (dienstplan, doctor, date, job) -> isWorkedShiftDayBefore(dienstplan, doctor, date))
+                .add(NOT_AVAILABLE_THIS_DAY, (dienstplan, doctor, date, job) -> !isOkForDoctorThatDay(doctor, date))
+                .add(WEEKEND_VACATION, (dienstplan, doctor, date, job) ->
+                        Dates.isWeekend(date) && dienstplan.isDoctorWorking(date, jobs.getUrlaub(), doctor))
+                .add(SHIFT_LAST_WEEKEND, (dienstplan, doctor, date, job) ->
+                        Dates.isWeekend(date) && isWorkedShiftLastWeekend(dienstplan, doctor, date));
+        rules.setOrder(SHIFT_TAKEN, NOT_AVAILABLE_THIS_DAY, SHIFT_DAY_BEFORE, DAY_JOB_OR_VACATION, WEEKEND_VACATION,
+                SHIFT_LAST_WEEKEND, TOO_MANY_SHIFTS, TOO_MANY_WEEKEND_SHIFTS);
+        if (!order.isEmpty()) rules.setOrder(order.toArray(new ShiftRule[0]));
     }
 
     public boolean canWorkShift(Dienstplan dienstplan, Doctor doctor, LocalDate date) {
-        boolean shiftAvailable = isShiftAvailable(dienstplan, date);
-        boolean couldWorkOP = couldWorkOP(dienstplan, doctor, date);
-        boolean weekday = !Dates.isWeekend(date);
-        boolean weekend = Dates.isWeekend(date);
-        boolean workedTooManyShiftsThisMonth = hasWorkedTooManyShiftsThisMonth(dienstplan, doctor, date);
-        boolean workedTooManyWeekendShiftsThisMonth = hasWorkedTooManyWeekendShiftsThisMonth(dienstplan, doctor, date);
-        boolean workedShiftDayBefore = isWorkedShiftDayBefore(dienstplan, doctor, date);
-        boolean workedShiftLastWeekend = isWorkedShiftLastWeekend(dienstplan, doctor, date);
-        boolean okForDoctorThatDay = isOkForDoctorThatDay(doctor, date);
-        boolean hasVacation = dienstplan.isDoctorWorking(date, jobs.getUrlaub(), doctor);
-        if (!shiftAvailable) {
-            explanations.addExplanation(date, Jobs.JobName.DIENST, doctor.getDocEnum(), "Someone is already assigned for today's shift.");
-            return false;
-        }
-        if (weekday && !couldWorkOP) {
-            explanations.addExplanation(date, Jobs.JobName.DIENST, doctor.getDocEnum(), "Doc has vacation or is working a weekly day job.");
-            return false;
-        }
-        if (weekend && workedTooManyWeekendShiftsThisMonth) {
-            explanations.addExplanation(date, Jobs.JobName.DIENST, doctor.getDocEnum(), "Doc worked too many weekend shifts already this month.");
-            return false;
-        }
-        if (workedTooManyShiftsThisMonth) {
-            explanations.addExplanation(date, Jobs.JobName.DIENST, doctor.getDocEnum(), "Doc worked too many shifts already this month.");
-            return false;
-        }
-        if (workedShiftDayBefore) {
-            explanations.addExplanation(date, Jobs.JobName.DIENST, doctor.getDocEnum(), "Doc worked a shift yesterday.");
-            return false;
-        }
-        if (!okForDoctorThatDay) {
-            explanations.addExplanation(date, Jobs.JobName.DIENST, doctor.getDocEnum(), "Doc doens't work shifts this day of the week.");
-            return false;
-        }
-        if (weekend && hasVacation) {
-            explanations.addExplanation(date, Jobs.JobName.DIENST, doctor.getDocEnum(), "It's the weekend and the Doc has vacation today.");
-            return false;
-        }
-        if (weekend && workedShiftLastWeekend) {
-            explanations.addExplanation(date, Jobs.JobName.DIENST, doctor.getDocEnum(), "It's the weekend and the Doc did a shift last weekend.");
-            return false;
-        }
-        return true;
+        ShiftRule rejection = rules.firstRejection(dienstplan, doctor, date, jobs.getDienst());
+        if (rejection == null) return true;
+        dienstplan.getExplanations().addExplanation(date, jobs.getDienst(), doctor, rejection);
+        return false;
     }
 
     private boolean isWorkedShiftLastWeekend(Dienstplan dienstplan, Doctor doctor, LocalDate date) {
@@ -81,10 +76,10 @@ public class ShiftDecider {
     }
 
     private boolean couldWorkOP(Dienstplan dienstplan, Doctor doctor, LocalDate date) {
-        if (dienstplan.getAssignedDoctors(date, jobs.getEaz()).contains(doctor)) return false;
-        if (dienstplan.getAssignedDoctors(date, jobs.getZna()).contains(doctor)) return false;
-        if (dienstplan.getAssignedDoctors(date, jobs.getStation()).contains(doctor)) return false;
-        if (dienstplan.getAssignedDoctors(date, jobs.getUrlaub()).contains(doctor)) return false;
+        if (dienstplan.isDoctorWorking(date, jobs.getEaz(), doctor)) return false;
+        if (dienstplan.isDoctorWorking(date, jobs.getZna(), doctor)) return false;
+        if (dienstplan.isDoctorWorking(date, jobs.getStation(), doctor)) return false;
+        if (dienstplan.isDoctorWorking(date, jobs.getUrlaub(), doctor)) return false;
         return true;
     }
 
@@ -102,7 +97,7 @@ public class ShiftDecider {
     }
 
     private boolean isWorkedShiftDayBefore(Dienstplan dienstplan, Doctor doctor, LocalDate date) {
-                    return dataFinder.getDoctorsDayBefore(dienstplan, date, 1, jobs.getDienst()).contains(doctor);
+        return dienstplan.isDoctorWorking(date.minusDays(1), jobs.getDienst(), doctor);
     }
 
     private boolean isOkForDoctorThatDay(Doctor doctor, LocalDate date) {
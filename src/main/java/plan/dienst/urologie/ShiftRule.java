@@ -0,0 +1,40 @@
+package plan.dienst.urologie;
+
+import java.util.Locale;
+
+/**
+ * The rules checked by ShiftDecider, in the order they were originally written.
+ * The ordinal is the bit in Explanations, so new rules go at the end.
+ */
+public enum ShiftRule implements ReasonCode {
+
+    SHIFT_TAKEN("Someone is already assigned for today's shift.",
+            "Der Dienst heute ist schon vergeben."),
+    DAY_JOB_OR_VACATION("Doc has vacation or is working a weekly day job.",
+            "Arzt hat Urlaub oder eine Wochenaufgabe."),
+    TOO_MANY_WEEKEND_SHIFTS("Doc worked too many weekend shifts already this month.",
+            "Arzt hatte diesen Monat schon zu viele Wochenenddienste."),
+    TOO_MANY_SHIFTS("Doc worked too many shifts already this month.",
+            "Arzt hatte diesen Monat schon zu viele Dienste."),
+    SHIFT_DAY_BEFORE("Doc worked a shift yesterday.",
+            "Arzt hatte gestern Dienst."),
+    NOT_AVAILABLE_THIS_DAY("Doc doens't work shifts this day of the week.",
+            "Arzt macht an diesem Wochentag keine Dienste."),
+    WEEKEND_VACATION("It's the weekend and the Doc has vacation today.",
+            "Es ist Wochenende und der Arzt hat heute Urlaub."),
+    SHIFT_LAST_WEEKEND("It's the weekend and the Doc did a shift last weekend.",
+            "Es ist Wochenende und der Arzt hatte letztes Wochenende Dienst.");
+
+    private final String english;
+    private final String german;
+
+    ShiftRule(String english, String german) {
+        this.english = english;
+        this.german = german;
+    }
+
+    @Override
+    public String getText(Locale locale) {
+        return locale.getLanguage().equals(Locale.GERMAN.getLanguage()) ? german : english;
+    }
+}
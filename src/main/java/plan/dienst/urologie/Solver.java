@@ -1,13 +1,468 @@
 package plan.dienst.urologie;
 
-import com.google.ortools.linearsolver.MPSolver;
+import com.google.ortools.Loader;
+import com.google.ortools.sat.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a Dienstplan for a quarter with the CP-SAT solver instead of random restarts.
+ * The hard rules are the ones ShiftDecider and DayJobDecider check; the objective is the weighted sum of the
+ * components of Statistics.getScore (empty jobs, doctors not working, shift distribution, OP distribution), and
+ * the score of the plan is that sum, ScoreTracker.getWeightedScore. It is not comparable to the score of
+ * PlanBuilder, which is the OP distribution alone.
+ * Presets are fixed assignments and are kept even where they break a rule, as in PlanBuilder.
+ */
 @Component
 public class Solver {
 
-    // Create the linear solver with the GLOP backend.
-    //MPSolver solver = MPSolver.createSolver("GLOP");
+    private static boolean nativeLibrariesLoaded;
+
+    private final Jobs jobs;
+    private final Doctors doctors;
+    private final Statistics statistics;
+
+    @Getter @Setter
+    @Value("${planner.cpsat.time-limit-seconds:30}")
+    private double timeLimitSeconds = 30;
+    @Getter @Setter
+    private int searchWorkers = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    public Solver(Jobs jobs, Doctors doctors, Statistics statistics) {
+        this.jobs = jobs;
+        this.doctors = doctors;
+        this.statistics = statistics;
+    }
+
+    private static synchronized void loadNativeLibraries() {
+        if (nativeLibrariesLoaded) return;
+        Loader.loadNativeLibraries();
+        nativeLibrariesLoaded = true;
+    }
+
+    public Dienstplan solve(Presets presets, int jahr, int quartil) {
+        loadNativeLibraries();
+        Dienstplan dienstplan = new Dienstplan(doctors.size(), jobs.size());
+        dienstplan.initDates(jahr, quartil);
+        dienstplan.setDoctorOrder(new ArrayList<>(doctors.getAllDoctors()));
+        Formulation formulation = new Formulation(dienstplan.getDates(), presets);
+        formulation.addShiftRules();
+        formulation.addDayJobRules();
+        formulation.addObjective();
+
+        CpSolver solver = new CpSolver();
+        solver.getParameters().setMaxTimeInSeconds(timeLimitSeconds);
+        solver.getParameters().setNumSearchWorkers(searchWorkers);
+        CpSolverStatus status = solver.solve(formulation.model);
+        System.out.println("CP-SAT " + status + " in " + solver.wallTime() + "s, objective " + solver.objectiveValue()
+                + ", bound " + solver.bestObjectiveBound());
+        if (status != CpSolverStatus.OPTIMAL && status != CpSolverStatus.FEASIBLE)
+            throw new IllegalStateException("CP-SAT found no plan: " + status);
+        formulation.copySolution(solver, dienstplan);
+        ScoreTracker tracker = statistics.track(dienstplan, jahr, quartil);
+        tracker.detach();
+        dienstplan.setScore(tracker.getWeightedScore());
+        return dienstplan;
+    }
+
+    /*
+    x[doctor][day][job] is 1 when the doctor does the job that day. Variables are only created where the doctor
+    and the job are available, so most "not available" rules don't need constraints. Only the jobs the heuristic
+    knows by name are modelled, other jobs of the roster are left empty.
+     */
+    private class Formulation {
+
+        private final CpModel model = new CpModel();
+        private final List<LocalDate> dates;
+        private final List<Doctor> docs = doctors.getAllDoctors();
+        private final List<Job> planJobs = List.of(jobs.getEaz(), jobs.getZna(), jobs.getStation(), jobs.getOp(), jobs.getDienst());
+        private final int dienst = planJobs.indexOf(jobs.getDienst());
+        private final BoolVar[][][] x;
+        private final boolean[][][] fixed;
+        private final boolean[][] vacation;
+        private final List<LinearArgument> objectiveTerms = new ArrayList<>();
+        private final List<Long> objectiveWeights = new ArrayList<>();
+
+        Formulation(List<LocalDate> dates, Presets presets) {
+            this.dates = dates;
+            int d = docs.size(), t = dates.size(), j = planJobs.size();
+            x = new BoolVar[d][t][j];
+            fixed = new boolean[d][t][j];
+            vacation = new boolean[d][t];
+            for (Preset preset : presets.getPresets()) {
+                int day = dayIndex(preset.getDate());
+                int doc = doctors.getDoctor(preset.getDocName()).getId();
+                Job job = jobs.getJob(preset.getJobName());
+                if (day < 0) continue;
+                if (job == jobs.getUrlaub()) vacation[doc][day] = true;
+                else if (planJobs.contains(job)) fixed[doc][day][planJobs.indexOf(job)] = true;
+            }
+            for (int doc = 0; doc < d; doc++) {
+                for (int day = 0; day < t; day++) {
+                    for (int job = 0; job < j; job++) {
+                        if (fixed[doc][day][job] || isAllowed(doc, day, job)) {
+                            x[doc][day][job] = model.newBoolVar("x_" + doc + "_" + day + "_" + job);
+                            if (fixed[doc][day][job]) model.addEquality(x[doc][day][job], 1);
+                        }
+                    }
+                }
+            }
+        }
+
+        private boolean isAllowed(int doc, int day, int job) {
+            DayOfWeek dayOfWeek = dates.get(day).getDayOfWeek();
+            Doctor doctor = docs.get(doc);
+            if (vacation[doc][day]) return false;
+            if (!planJobs.get(job).getVerfugbareTage().contains(dayOfWeek)) return false;
+            return doctor.isAvailableOn(dayOfWeek, job == dienst);
+        }
+
+        // ShiftDecider
+        void addShiftRules() {
+            Job job = jobs.getDienst();
+            for (int day = 0; day < dates.size(); day++) {
+                // SHIFT_TAKEN
+                atMost(day, dienst, 1);
+                for (int doc = 0; doc < docs.size(); doc++) {
+                    // SHIFT_DAY_BEFORE
+                    if (day > 0) atMostOne(doc, day, dienst, doc, day - 1, dienst);
+                    // SHIFT_LAST_WEEKEND
+                    if (Dates.isWeekend(dates.get(day))) {
+                        int saturday = dates.get(day).getDayOfWeek() == DayOfWeek.SATURDAY ? day - 7 : day - 8;
+                        for (int last = saturday; last <= saturday + 1; last++)
+                            if (last >= 0) atMostOne(doc, day, dienst, doc, last, dienst);
+                    }
+                }
+            }
+            // TOO_MANY_SHIFTS, TOO_MANY_WEEKEND_SHIFTS
+            for (int doc = 0; doc < docs.size(); doc++) {
+                int maxShifts = Math.min(job.getMaxPerMonthPerDoctor(), docs.get(doc).getMaxDiensteImMonat());
+                for (List<Integer> month : months()) {
+                    limitDays(doc, dienst, month, maxShifts);
+                    limitDays(doc, dienst, month.stream().filter(day -> Dates.isWeekend(dates.get(day))).toList(),
+                            job.getMaxWeekendJobsPerMonth());
+                }
+            }
+            // DAY_JOB_OR_VACATION and WEEKEND_VACATION: no variables on vacation days, day jobs are done below
+        }
+
+        // DayJobDecider
+        void addDayJobRules() {
+            List<Doctor> partTimers = docs.stream().filter(doc -> !doc.isVollzeit()).toList();
+            for (int day = 0; day < dates.size(); day++) {
+                for (int doc = 0; doc < docs.size(); doc++) {
+                    // ON_VACATION, WORKING_OTHER_JOB: one day job per day
+                    List<Literal> dayJobs = new ArrayList<>();
+                    int fixedDayJobs = 0;
+                    for (int job = 0; job < planJobs.size(); job++) {
+                        if (job == dienst || x[doc][day][job] == null) continue;
+                        dayJobs.add(x[doc][day][job]);
+                        if (fixed[doc][day][job]) fixedDayJobs++;
+                        // SHIFT_DAY_BEFORE
+                        if (day > 0) atMostOne(doc, day, job, doc, day - 1, dienst);
+                    }
+                    // presets may give a doctor several day jobs; the solver then adds none
+                    int max = Math.max(1, fixedDayJobs);
+                    if (dayJobs.size() > max) model.addLessOrEqual(LinearExpr.sum(dayJobs.toArray(new Literal[0])), max);
+                }
+                for (int job = 0; job < planJobs.size(); job++) {
+                    if (job == dienst) continue;
+                    addCapacity(day, job);
+                    if (planJobs.get(job).isOneDoctorPerWeek()) addWeeklyJobRules(day, job, partTimers);
+                }
+            }
+            // WORKED_JOB_TOO_MUCH
+            for (int doc = 0; doc < docs.size(); doc++) {
+                for (int job = 0; job < planJobs.size(); job++) {
+                    if (job == dienst) continue;
+                    for (List<Integer> month : months())
+                        limitDays(doc, job, month, planJobs.get(job).getMaxPerMonthPerDoctor());
+                }
+            }
+        }
+
+        // JOB_FULL, NEEDS_PART_TIME: a full-time doctor fills a job, a part-time doctor fills half of it
+        private void addCapacity(int day, int job) {
+            int max = planJobs.get(job).getMaxDoctorsPerDay();
+            if (max >= docs.size()) return;
+            List<Literal> literals = new ArrayList<>();
+            List<Long> weights = new ArrayList<>();
+            long fixedWeight = 0;
+            for (int doc = 0; doc < docs.size(); doc++) {
+                if (x[doc][day][job] == null) continue;
+                long weight = docs.get(doc).isVollzeit() ? 2 : 1;
+                literals.add(x[doc][day][job]);
+                weights.add(weight);
+                if (fixed[doc][day][job]) fixedWeight += weight;
+            }
+            if (literals.isEmpty()) return;
+            model.addLessOrEqual(LinearExpr.weightedSum(literals.toArray(new Literal[0]),
+                    weights.stream().mapToLong(Long::longValue).toArray()), Math.max(2L * max, fixedWeight));
+        }
+
+        private void addWeeklyJobRules(int day, int job, List<Doctor> partTimers) {
+            LocalDate date = dates.get(day);
+            boolean jobDoneDayBefore = day > 0
+                    && planJobs.get(job).getVerfugbareTage().contains(date.minusDays(1).getDayOfWeek());
+            List<Integer> week = weekdays(date);
+            Literal fullTimerDayBefore = day > 0 ? fullTimerOn(day - 1, job) : null;
+            for (int doc = 0; doc < docs.size(); doc++) {
+                BoolVar var = x[doc][day][job];
+                if (var == null) continue;
+                Doctor doctor = docs.get(doc);
+                // OTHER_WEEKLY_JOB also covers the shift, and DAY_JOB_OR_VACATION forbids it on weekdays
+                atMostOne(doc, day, job, doc, day, dienst);
+                if (doctor.isVollzeit()) {
+                    // SAME_DOC_ALL_WEEK
+                    if (jobDoneDayBefore && !fixed[doc][day][job]) {
+                        if (x[doc][day - 1][job] == null) model.addEquality(var, 0);
+                        else model.addImplication(var, x[doc][day - 1][job]);
+                    }
+                    // SHIFT_OR_VACATION_THIS_WEEK
+                    for (int other : week) {
+                        if (vacation[doc][other] && !fixed[doc][day][job]) model.addEquality(var, 0);
+                        atMostOne(doc, day, job, doc, other, dienst);
+                    }
+                } else if (!fixed[doc][day][job]) {
+                    // NO_PART_TIME_THIS_WEEK
+                    for (int other : week) model.addImplication(var, partTimerAvailable(other, partTimers));
+                }
+                // DIFFERENT_FULL_TIME_DOC
+                if (fullTimerDayBefore != null) keepFullTimer(doc, day, job, fullTimerDayBefore);
+            }
+        }
+
+        /*
+        After a full-time doctor only the doctors of the day before may do the job: one clause per doctor on the
+        literal fullTimerOn instead of one per pair of doctors. A preset keeps the pairwise clauses, which leave
+        out the other presets.
+         */
+        private void keepFullTimer(int doc, int day, int job, Literal fullTimerDayBefore) {
+            BoolVar var = x[doc][day][job], dayBefore = x[doc][day - 1][job];
+            if (fixed[doc][day][job]) {
+                for (int prev = 0; prev < docs.size(); prev++)
+                    if (prev != doc && docs.get(prev).isVollzeit()) atMostOne(doc, day, job, prev, day - 1, job);
+            } else if (dayBefore == null) {
+                model.addImplication(var, fullTimerDayBefore.not());
+            } else {
+                model.addBoolOr(new Literal[]{var.not(), fullTimerDayBefore.not(), dayBefore});
+            }
+        }
+
+        // true if a full-time doctor does the job that day, null if none can
+        private Literal fullTimerOn(int day, int job) {
+            List<Literal> fullTimers = new ArrayList<>();
+            for (int doc = 0; doc < docs.size(); doc++)
+                if (docs.get(doc).isVollzeit() && x[doc][day][job] != null) fullTimers.add(x[doc][day][job]);
+            if (fullTimers.isEmpty()) return null;
+            BoolVar any = model.newBoolVar("fullTimer_" + day + "_" + job);
+            for (Literal fullTimer : fullTimers) model.addImplication(fullTimer, any);
+            fullTimers.add(any.not());
+            model.addBoolOr(fullTimers.toArray(new Literal[0]));
+            return any;
+        }
+
+        private final Map<Integer, Literal> partTimerAvailableByDay = new HashMap<>();
+
+        // true if a part-time doctor is free for a day job: available that weekday, no vacation, no shift that day or the day before
+        private Literal partTimerAvailable(int day, List<Doctor> partTimers) {
+            return partTimerAvailableByDay.computeIfAbsent(day, d -> {
+                BoolVar any = model.newBoolVar("partTimer_" + d);
+                List<Literal> free = new ArrayList<>();
+                for (Doctor partTimer : partTimers) {
+                    int doc = docs.indexOf(partTimer);
+                    if (vacation[doc][d] || !partTimer.getVerfugbareTage().contains(dates.get(d).getDayOfWeek())) continue;
+                    BoolVar isFree = model.newBoolVar("free_" + doc + "_" + d);
+                    if (x[doc][d][dienst] != null) model.addImplication(isFree, x[doc][d][dienst].not());
+                    if (d > 0 && x[doc][d - 1][dienst] != null) model.addImplication(isFree, x[doc][d - 1][dienst].not());
+                    free.add(isFree);
+                }
+                if (free.isEmpty()) model.addEquality(any, 0);
+                else model.addLessOrEqual(any, LinearExpr.sum(free.toArray(new Literal[0])));
+                return any;
+            });
+        }
+
+        /*
+        Statistics.getScore: empty jobs * 100 + doctors not working * 20 + shift distribution * 10 + OP distribution.
+        The distributions are sums of |value - average|; they are scaled to integers by the number of doctors and
+        the least common multiple of the shift maxima.
+         */
+        void addObjective() {
+            for (int day = 0; day < dates.size(); day++) {
+                for (int job = 0; job < planJobs.size(); job++) {
+                    List<Literal> assigned = new ArrayList<>();
+                    for (int doc = 0; doc < docs.size(); doc++) {
+                        Literal var = x[doc][day][job];
+                        if (var != null) assigned.add(var);
+                    }
+                    BoolVar empty = model.newBoolVar("empty_" + day + "_" + planJobs.get(job).getName());
+                    assigned.add(empty);
+                    model.addBoolOr(assigned.toArray(new Literal[0]));
+                    addObjectiveTerm(empty, 100);
+                }
+                if (Dates.isWeekend(dates.get(day))) continue;
+                DayOfWeek dayOfWeek = dates.get(day).getDayOfWeek();
+                for (int doc = 0; doc < docs.size(); doc++) {
+                    Doctor doctor = docs.get(doc);
+                    if (!doctor.getVerfugbareTage().contains(dayOfWeek) && !doctor.getVerfugbareTageDienst().contains(dayOfWeek))
+                        continue;
+                    List<Literal> working = new ArrayList<>();
+                    for (int job = 0; job < planJobs.size(); job++)
+                        if (x[doc][day][job] != null) working.add(x[doc][day][job]);
+                    if (day > 0 && x[doc][day - 1][dienst] != null) working.add(x[doc][day - 1][dienst]);
+                    BoolVar notWorking = model.newBoolVar("notWorking_" + doc + "_" + day);
+                    working.add(notWorking);
+                    model.addBoolOr(working.toArray(new Literal[0]));
+                    addObjectiveTerm(notWorking, 20);
+                }
+            }
+            addDistribution();
+        }
+
+        private void addDistribution() {
+            List<Integer> counted = new ArrayList<>();
+            for (int doc = 0; doc < docs.size(); doc++)
+                if (!docs.get(doc).getVerfugbareTage().isEmpty()) counted.add(doc);
+            long n = counted.size();
+            long lcm = 1;
+            for (int doc : counted) lcm = lcm(lcm, 3L * Math.max(1, docs.get(doc).getMaxDiensteImMonat()));
+            long scale = n * lcm;
+            // each weight below is multiplied by n * lcm, so the other terms are scaled as well
+            for (int i = 0; i < objectiveWeights.size(); i++) objectiveWeights.set(i, objectiveWeights.get(i) * scale);
+            int op = planJobs.indexOf(jobs.getOp());
+            LinearExpr[] shifts = new LinearExpr[counted.size()];
+            LinearExpr[] ops = new LinearExpr[counted.size()];
+            long[] shiftFactor = new long[counted.size()];
+            for (int i = 0; i < counted.size(); i++) {
+                int doc = counted.get(i);
+                shifts[i] = daysWorked(doc, dienst);
+                ops[i] = daysWorked(doc, op);
+                shiftFactor[i] = lcm / (3L * Math.max(1, docs.get(doc).getMaxDiensteImMonat()));
+            }
+            long maxDays = dates.size();
+            for (int i = 0; i < counted.size(); i++) {
+                // n * ratio_i - sum(ratio), in units of 1/lcm
+                LinearExprBuilder shiftDiff = LinearExpr.newBuilder().addTerm(shifts[i], n * shiftFactor[i]);
+                LinearExprBuilder opDiff = LinearExpr.newBuilder().addTerm(ops[i], n);
+                for (int k = 0; k < counted.size(); k++) {
+                    shiftDiff.addTerm(shifts[k], -shiftFactor[k]);
+                    opDiff.addTerm(ops[k], -1);
+                }
+                IntVar shiftAbs = model.newIntVar(0, n * lcm * maxDays, "shiftDist_" + i);
+                IntVar opAbs = model.newIntVar(0, n * maxDays, "opDist_" + i);
+                model.addAbsEquality(shiftAbs, shiftDiff);
+                model.addAbsEquality(opAbs, opDiff);
+                objectiveTerms.add(shiftAbs);
+                objectiveWeights.add(10L); // |n * lcm * diff| / (n * lcm) * 10, times the scale n * lcm
+                objectiveTerms.add(opAbs);
+                objectiveWeights.add(lcm); // |n * diff| / n, times the scale n * lcm
+            }
+            model.minimize(LinearExpr.weightedSum(objectiveTerms.toArray(new LinearArgument[0]),
+                    objectiveWeights.stream().mapToLong(Long::longValue).toArray()));
+        }
+
+        private void addObjectiveTerm(LinearArgument term, long weight) {
+            objectiveTerms.add(term);
+            objectiveWeights.add(weight);
+        }
+
+        private LinearExpr daysWorked(int doc, int job) {
+            // like Statistics, only the three months of the quarter count
+            LocalDate firstOfQuarter = dates.get(dates.size() - 1).minusMonths(2).withDayOfMonth(1);
+            List<Literal> literals = new ArrayList<>();
+            for (int day = 0; day < dates.size(); day++)
+                if (!dates.get(day).isBefore(firstOfQuarter) && x[doc][day][job] != null) literals.add(x[doc][day][job]);
+            return LinearExpr.sum(literals.toArray(new Literal[0]));
+        }
+
+        void copySolution(CpSolver solver, Dienstplan dienstplan) {
+            for (int day = 0; day < dates.size(); day++) {
+                for (int doc = 0; doc < docs.size(); doc++) {
+                    if (vacation[doc][day]) dienstplan.assignDoctors(dates.get(day), jobs.getUrlaub(), docs.get(doc));
+                    for (int job = 0; job < planJobs.size(); job++) {
+                        if (x[doc][day][job] != null && solver.booleanValue(x[doc][day][job]))
+                            dienstplan.assignDoctors(dates.get(day), planJobs.get(job), docs.get(doc));
+                    }
+                }
+            }
+        }
+
+        private void atMost(int day, int job, int max) {
+            List<Literal> literals = new ArrayList<>();
+            int fixedCount = 0;
+            for (int doc = 0; doc < docs.size(); doc++) {
+                if (x[doc][day][job] == null) continue;
+                literals.add(x[doc][day][job]);
+                if (fixed[doc][day][job]) fixedCount++;
+            }
+            if (literals.size() > max) model.addLessOrEqual(LinearExpr.sum(literals.toArray(new Literal[0])), Math.max(max, fixedCount));
+        }
+
+        // presets may break a rule; the rule then only stops the solver from adding more
+        private void atMostOne(int doc1, int day1, int job1, int doc2, int day2, int job2) {
+            BoolVar a = x[doc1][day1][job1], b = x[doc2][day2][job2];
+            if (a == null || b == null || a == b) return;
+            if (fixed[doc1][day1][job1] && fixed[doc2][day2][job2]) return;
+            model.addBoolOr(new Literal[]{a.not(), b.not()});
+        }
+
+        private void limitDays(int doc, int job, List<Integer> days, int max) {
+            List<Literal> literals = new ArrayList<>();
+            int fixedCount = 0;
+            for (int day : days) {
+                if (x[doc][day][job] == null) continue;
+                literals.add(x[doc][day][job]);
+                if (fixed[doc][day][job]) fixedCount++;
+            }
+            if (literals.size() > max) model.addLessOrEqual(LinearExpr.sum(literals.toArray(new Literal[0])), Math.max(max, fixedCount));
+        }
+
+        // day indices grouped by calendar month
+        private List<List<Integer>> months() {
+            List<List<Integer>> months = new ArrayList<>();
+            for (int day = 0; day < dates.size(); day++) {
+                if (day == 0 || dates.get(day).getDayOfMonth() == 1) months.add(new ArrayList<>());
+                months.get(months.size() - 1).add(day);
+            }
+            return months;
+        }
+
+        // Monday to Friday of the date's week, as far as they are in the plan
+        private List<Integer> weekdays(LocalDate date) {
+            List<Integer> week = new ArrayList<>();
+            LocalDate monday = Dates.getNearestPreviousMondayTo(date);
+            for (int i = 0; i < 5; i++) {
+                int day = dayIndex(monday.plusDays(i));
+                if (day >= 0) week.add(day);
+            }
+            return week;
+        }
+
+        private int dayIndex(LocalDate date) {
+            int day = (int) (date.toEpochDay() - dates.get(0).toEpochDay());
+            return day >= 0 && day < dates.size() ? day : -1;
+        }
+
+        private long lcm(long a, long b) {
+            long x = a, y = b;
+            while (y != 0) {
+                long t = x % y;
+                x = y;
+                y = t;
+            }
+            return a / x * b;
+        }
+    }
 
     /*
     resources:
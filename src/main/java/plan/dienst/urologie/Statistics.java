@@ -21,6 +21,7 @@ public class Statistics {
 
     /**
      * Bewertung vom Dienstplan. Having empty job is very bad, having different workloads for doctors is not good.
+     * The workloads include the quarters before, if the plan has a Carryover.
      * @return one number summarizing the score
      */
     public double getScore(Dienstplan dienstplan, int year, int quartil) {
@@ -37,6 +38,13 @@ public class Statistics {
         return score;
     }
 
+    /**
+     * Follows the changes to the plan so that the score can be read at any time without recomputing it.
+     */
+    public ScoreTracker track(Dienstplan dienstplan, int year, int quartil) {
+        return new ScoreTracker(jobs, doctors, dienstplan, year, quartil);
+    }
+
     // perfect distribution returns 0
     public double getShiftDistributionScore(Map<Doctor, Double> shiftDistribution) {
         double score = 0;
@@ -60,6 +68,10 @@ public class Statistics {
         for (Doctor doc : docsWithAvailableDays) {
             int totalAvailable = doc.getMaxDiensteImMonat() * 3;
             int totalWorked = dataFinder.getTimesDoctorScheduledThisQuarter(dienstplan, year, quartil, doc, jobs.getDienst());
+            if (dienstplan.getCarryover() != null) {
+                totalAvailable += doc.getMaxDiensteImMonat() * dienstplan.getCarryover().getMonths();
+                totalWorked += dienstplan.getCarryover().getDienste(doc);
+            }
             ratio = (double) totalWorked / (double) totalAvailable;
             shiftDistribution.put(doc, ratio);
             sum += ratio;
@@ -82,6 +94,7 @@ public class Statistics {
                 doctor -> !doctor.getVerfugbareTage().isEmpty()).toList();
         for (Doctor doc : docsWithAvailableDays) {
             int totalWorked = dataFinder.getTimesDoctorScheduledThisQuarter(dienstplan, year, quartil, doc, jobs.getOp());
+            if (dienstplan.getCarryover() != null) totalWorked += dienstplan.getCarryover().getOps(doc);
             ratio = (double) totalWorked;
             OPdistribution.put(doc, ratio);
             sum += ratio;
@@ -139,10 +152,10 @@ public class Statistics {
         for (LocalDate date = dienstplan.getStartDate(); !date.isAfter(dienstplan.getEndDate()); date = date.plusDays(1)) {
             if (!Dates.isWeekend(date)) {
                 for (Doctor doc : doctors.getAllDoctors()) {
-                    if (!dienstplan.getAssignedDoctors(date.minusDays(1), jobs.getDienst()).contains(doc)
+                    if (!dienstplan.isDoctorWorking(date.minusDays(1), jobs.getDienst(), doc)
                             && (doc.getVerfugbareTage().contains(date.getDayOfWeek())
                             || doc.getVerfugbareTageDienst().contains(date.getDayOfWeek()))
-                            && !dienstplan.getAssignedDoctors(date, jobs.getAllJobs().toArray(new Job[0])).contains(doc)) {
+                            && !dienstplan.isDoctorWorkingAny(date, doc, jobs.getAllJobs())) {
                         notWorking++;
                     }
                 }
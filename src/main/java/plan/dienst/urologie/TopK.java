@@ -0,0 +1,86 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the k items with the lowest scores, so memory stays the same however many restarts are run.
+ * Offers can come from any thread. Items with the same score are ordered by a tie-break on the items, so the kept
+ * list doesn't depend on the order the offers came in. Scores that can't make it into the list are rejected without
+ * locking.
+ */
+public class TopK<T> {
+
+    @Getter
+    public static class Entry<T> {
+        private final T item;
+        private final double score;
+
+        private Entry(T item, double score) {
+            this.item = item;
+            this.score = score;
+        }
+    }
+
+    @Getter
+    private final int k;
+    private final Comparator<Entry<T>> bestFirst;
+    private final PriorityQueue<Entry<T>> worstFirst;
+    private volatile double worstKept = Double.POSITIVE_INFINITY; // only set once the list is full
+    private final LongAdder offered = new LongAdder();
+
+    /**
+     * @param ties orders items with the same score, the first is kept
+     */
+    public TopK(int k, Comparator<? super T> ties) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1: " + k);
+        this.k = k;
+        bestFirst = Comparator.comparingDouble((Entry<T> entry) -> entry.score)
+                .thenComparing(entry -> entry.item, ties);
+        worstFirst = new PriorityQueue<>(k, bestFirst.reversed());
+    }
+
+    /**
+     * @return true if the item is one of the best k so far
+     */
+    public boolean offer(T item, double score) {
+        offered.increment();
+        if (score > worstKept) return false;
+        Entry<T> entry = new Entry<>(item, score);
+        synchronized (worstFirst) {
+            if (worstFirst.size() == k) {
+                if (bestFirst.compare(entry, worstFirst.peek()) >= 0) return false;
+                worstFirst.poll();
+            }
+            worstFirst.add(entry);
+            if (worstFirst.size() == k) worstKept = worstFirst.peek().score;
+            return true;
+        }
+    }
+
+    /**
+     * @return the kept entries, best first
+     */
+    public List<Entry<T>> getEntries() {
+        List<Entry<T>> entries;
+        synchronized (worstFirst) {
+            entries = new ArrayList<>(worstFirst);
+        }
+        entries.sort(bestFirst);
+        return entries;
+    }
+
+    public long getOffered() {
+        return offered.sum();
+    }
+
+    public Entry<T> getBest() {
+        List<Entry<T>> entries = getEntries();
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+}
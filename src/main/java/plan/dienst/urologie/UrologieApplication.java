@@ -1,19 +1,41 @@
 package plan.dienst.urologie;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import static plan.dienst.urologie.Doctors.DocName.*;
 
 @SpringBootApplication
 public class UrologieApplication implements CommandLineRunner {
 
 	private final PlanBuilder planBuilder;
+	private final HorizonPlanner horizonPlanner;
+	private final Solver solver;
+	private final RejectionProfiler rejectionProfiler;
+	private final boolean cli;
+	private final String engine;
+	private final int year;
+	private final int quarter;
+	private final int quarters;
 
 	@Autowired
-	public UrologieApplication(PlanBuilder planBuilder) {
+	public UrologieApplication(PlanBuilder planBuilder, HorizonPlanner horizonPlanner, Solver solver,
+							   RejectionProfiler rejectionProfiler,
+							   @Value("${planner.cli.enabled:false}") boolean cli,
+							   @Value("${planner.engine:heuristic}") String engine,
+							   @Value("${planner.year:2024}") int year,
+							   @Value("${planner.quarter:1}") int quarter,
+							   @Value("${planner.quarters:1}") int quarters) {
 		this.planBuilder = planBuilder;
+		this.horizonPlanner = horizonPlanner;
+		this.solver = solver;
+		this.rejectionProfiler = rejectionProfiler;
+		this.cli = cli;
+		this.engine = engine;
+		this.year = year;
+		this.quarter = quarter;
+		this.quarters = quarters;
 	}
 
 	public static void main(String[] args) {
@@ -22,34 +44,38 @@ public class UrologieApplication implements CommandLineRunner {
 
 	@Override
 	public void run(String... args) throws Exception {
-		Presets presets = new Presets.Builder()
-				.dienst(SABINE, 1, 6)
-				.dienst(SABINE,1, 6)
-				.dienst(SABINE,1,20)
-				.dienst(SABINE, 2, 17)
-				.dienst(SABINE,3,23)
-				.dienst(SABINE,2,24)
-				.dienst(SEBASTIAN, 1, 13)
-				.dienst(SEBASTIAN, 2, 3)
-				.dienst(SEBASTIAN, 3,2)
-				.dienst(NIGEL, 1, 1)
-
-				.urlaub(DIMI, 1, 2)
-				.urlaub(NIGEL, 1, 13, 1, 28)
-				.urlaub(CHRISTOPH, 1, 22, 1, 26)
-				.urlaub(CHRISTOPH, 2, 9)
-				.urlaub(PAKTIS, 2,10,2,18)
-				.urlaub(JETTE, 2,10,2,18)
-				.urlaub(CHRISTOPH,2,20)
-				.urlaub(DIMI, 2,24,3,12)
-				.urlaub(CHRISTOPH, 3,13,3,28)
-				.urlaub(NIGEL,2,3,2,4)
-				.urlaub(MICHAL, 1, 13, 1, 21)
-				.urlaub(TIMO, 3, 2, 3, 17)
+		if (!cli) return;
+		Presets presets = new Presets.Builder(year)
+				.dienst("Sabine", 1, 6)
+				.dienst("Sabine",1, 6)
+				.dienst("Sabine",1,20)
+				.dienst("Sabine", 2, 17)
+				.dienst("Sabine",3,23)
+				.dienst("Sabine",2,24)
+				.dienst("Sebastian", 1, 13)
+				.dienst("Sebastian", 2, 3)
+				.dienst("Sebastian", 3,2)
+				.dienst("Nigel", 1, 1)
+
+				.urlaub("Dimi", 1, 2)
+				.urlaub("Nigel", 1, 13, 1, 28)
+				.urlaub("Christoph", 1, 22, 1, 26)
+				.urlaub("Christoph", 2, 9)
+				.urlaub("Paktis", 2,10,2,18)
+				.urlaub("Jette", 2,10,2,18)
+				.urlaub("Christoph",2,20)
+				.urlaub("Dimi", 2,24,3,12)
+				.urlaub("Christoph", 3,13,3,28)
+				.urlaub("Nigel",2,3,2,4)
+				.urlaub("Michal", 1, 13, 1, 21)
+				.urlaub("Timo", 3, 2, 3, 17)
 
 				.build();
 
-		planBuilder.makePlans(presets,2024, 1); // Call the makePlan() method when the application starts
+		if (engine.equals("cpsat")) planBuilder.printPlan(solver.solve(presets, year, quarter), quarter);
+		else if (quarters > 1) horizonPlanner.makePlans(presets, year, quarter, quarters);
+		else planBuilder.makePlans(presets, year, quarter); // Call the makePlan() method when the application starts
+		rejectionProfiler.printReport();
 	}
 
 }
@@ -0,0 +1,151 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The day jobs of one week filled again by a bounded backtracking search, for weeks PlanBuilder left with gaps. A gap
+ * is a job done that day with less than one full-time doctor. The greedy fill gives each job the first doctors who
+ * can take it, and that choice can close the job for the rest of the week: a part-time doctor on Monday means only
+ * part-time doctors can join. The search tries the doctors of each job in the same order, so its first plan is the
+ * greedy one, and then the others, until a plan without gaps is found or the steps are used up. The OP of each day
+ * comes after the other jobs, as in PlanBuilder. The search works on the plan itself and goes back with the
+ * journal of Dienstplan, and the week ends up with the plan with the fewest gaps, the greedy one on a tie.
+ */
+class WeekRepair {
+
+    private final Dienstplan dienstplan;
+    private final DataFinder dataFinder;
+    private final DayJobDecider dayJobDecider;
+    private final Job op;
+    private final List<LocalDate> week;
+    private final List<Job> dayJobs; // without the OP
+    private final int maxSteps;
+    @Getter
+    private int steps;
+    private int bestGaps;
+    private List<Assignment> best;
+    private List<Doctor> bestOrder;
+
+    private static class Assignment {
+        private final LocalDate date;
+        private final Job job;
+        private final Doctor[] doctors;
+
+        private Assignment(LocalDate date, Job job, Doctor[] doctors) {
+            this.date = date;
+            this.job = job;
+            this.doctors = doctors;
+        }
+    }
+
+    /**
+     * @param week the dates of the week, in order
+     * @param dayJobs the jobs filled before the OP, in the order PlanBuilder fills them
+     * @param maxSteps the most doctors the search assigns
+     */
+    WeekRepair(Dienstplan dienstplan, DataFinder dataFinder, DayJobDecider dayJobDecider, Job op,
+               List<LocalDate> week, List<Job> dayJobs, int maxSteps) {
+        this.dienstplan = dienstplan;
+        this.dataFinder = dataFinder;
+        this.dayJobDecider = dayJobDecider;
+        this.op = op;
+        this.week = week;
+        this.dayJobs = dayJobs;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Searches the week again if its greedy fill has gaps.
+     * @param mark the mark of the plan before the greedy fill of the week
+     * @param order the doctor order of the plan before the greedy fill
+     * @return the gaps of the week afterwards
+     */
+    int repair(int mark, List<Doctor> order) {
+        bestGaps = 0;
+        for (LocalDate date : week)
+            for (Job job : dayJobs) if (isGap(date, job)) bestGaps++;
+        if (bestGaps == 0) return 0;
+        best = snapshot();
+        bestOrder = new ArrayList<>(dienstplan.getDoctorOrder());
+        dienstplan.rollbackTo(mark);
+        search(0, 0, order);
+        dienstplan.rollbackTo(mark);
+        for (Assignment assignment : best) dienstplan.assignDoctors(assignment.date, assignment.job, assignment.doctors);
+        dienstplan.setDoctorOrder(bestOrder);
+        return bestGaps;
+    }
+
+    // a slot is a job of a date, date by date
+    private void search(int slot, int gaps, List<Doctor> order) {
+        if (gaps >= bestGaps || steps >= maxSteps) return;
+        if (slot == week.size() * dayJobs.size()) {
+            bestGaps = gaps;
+            best = snapshot();
+            bestOrder = order;
+            return;
+        }
+        List<Doctor> sorted = dataFinder.sortByScheduledJobsThisMonth(dienstplan, dateOf(slot),
+                new ArrayList<>(order), jobOf(slot));
+        fill(slot, gaps, sorted, 0);
+    }
+
+    // the next doctor of the slot, tried in turn from the position on; the slot is done when nobody else can join
+    private void fill(int slot, int gaps, List<Doctor> sorted, int from) {
+        LocalDate date = dateOf(slot);
+        Job job = jobOf(slot);
+        boolean joined = false;
+        for (int i = from; i < sorted.size() && gaps < bestGaps && steps < maxSteps; i++) {
+            if (!dayJobDecider.canWork(dienstplan, sorted.get(i), date, job)) continue;
+            joined = true;
+            steps++;
+            int mark = dienstplan.mark();
+            dienstplan.assignDoctors(date, job, sorted.get(i));
+            fill(slot, gaps, sorted, i + 1);
+            dienstplan.rollbackTo(mark);
+        }
+        if (!joined) next(slot, isGap(date, job) ? gaps + 1 : gaps, sorted);
+    }
+
+    private void next(int slot, int gaps, List<Doctor> order) {
+        if ((slot + 1) % dayJobs.size() != 0) {
+            search(slot + 1, gaps, order);
+            return;
+        }
+        LocalDate date = dateOf(slot);
+        int mark = dienstplan.mark();
+        List<Doctor> sorted = dataFinder.sortByScheduledJobsThisMonth(dienstplan, date, new ArrayList<>(order), op);
+        for (Doctor doc : sorted)
+            if (dayJobDecider.canWork(dienstplan, doc, date, op)) dienstplan.assignDoctors(date, op, doc);
+        search(slot + 1, gaps, sorted);
+        dienstplan.rollbackTo(mark);
+    }
+
+    private boolean isGap(LocalDate date, Job job) {
+        if (!job.getVerfugbareTage().contains(date.getDayOfWeek())) return false;
+        double fullness = 0;
+        for (Doctor doctor : dienstplan.getAssignedDoctors(date, job)) fullness += doctor.isVollzeit() ? 1 : .5;
+        return fullness < 1;
+    }
+
+    private List<Assignment> snapshot() {
+        List<Assignment> assignments = new ArrayList<>();
+        for (LocalDate date : week) {
+            for (Job job : dayJobs)
+                assignments.add(new Assignment(date, job, dienstplan.getAssignedDoctors(date, job).toArray(new Doctor[0])));
+            assignments.add(new Assignment(date, op, dienstplan.getAssignedDoctors(date, op).toArray(new Doctor[0])));
+        }
+        return assignments;
+    }
+
+    private LocalDate dateOf(int slot) {
+        return week.get(slot / dayJobs.size());
+    }
+
+    private Job jobOf(int slot) {
+        return dayJobs.get(slot % dayJobs.size());
+    }
+}
@@ -0,0 +1,86 @@
+package plan.dienst.urologie;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * The Dienste of one week from Sunday to Friday, found exactly: every day gets a doctor who can work that day, no
+ * doctor works two days in a row, at most 3 doctors share the week with at most 2 Dienste each, and nobody goes over
+ * the Dienste left in the month. The search goes day by day and tries the candidates in their given order, so the
+ * order decides who gets the week. Candidates not used yet with the same days and the same Dienste left are
+ * interchangeable: if one of them leads nowhere, so do the others, and only the first is tried. Each step then has
+ * a handful of distinct candidates, and a week without an assignment is proven so after a few hundred steps.
+ */
+class WeekShifts {
+
+    static final int DAYS = 6;
+    static final int MAX_DOCTORS = 3;
+    static final int MAX_SHIFTS = 2; // per doctor and week, so a full week has 3 doctors with 2 Dienste each
+
+    private final List<Doctor> candidates;
+    private final int[] days; // Sunday = bit 0
+    private final int[][] left; // [candidate][month]: Dienste left in the month of day 0 and of day 5
+    private final int[] month = new int[DAYS]; // 0 for the month of Sunday, 1 for the next
+    private final int[] type; // days and Dienste left, the same for interchangeable candidates
+    private final int[] shifts; // this week, per candidate
+    private final int[][] used; // [candidate][month] this week
+    private final int[] chosen = new int[DAYS];
+    private final boolean[][] tried = new boolean[DAYS][1 << (DAYS + 4)]; // [day][type]
+    private int doctorsUsed;
+    @Getter
+    private int steps;
+
+    /**
+     * @param candidates in the order they should be tried
+     * @param days the days each candidate can work a Dienst, Sunday = bit 0, by position in candidates
+     * @param left the Dienste each candidate has left in the month of Sunday and in the month of Friday
+     * @param firstDayOfNextMonth the day (0 to 5) the next month starts, or 6 if the week is in one month
+     */
+    WeekShifts(List<Doctor> candidates, int[] days, int[][] left, int firstDayOfNextMonth) {
+        this.candidates = candidates;
+        this.days = days;
+        this.left = left;
+        for (int day = firstDayOfNextMonth; day < DAYS; day++) month[day] = 1;
+        type = new int[candidates.size()];
+        for (int i = 0; i < type.length; i++)
+            type[i] = days[i] | Math.min(left[i][0], MAX_SHIFTS) << DAYS | Math.min(left[i][1], MAX_SHIFTS) << DAYS + 2;
+        shifts = new int[candidates.size()];
+        used = new int[candidates.size()][2];
+    }
+
+    /**
+     * @return the doctor of each day from Sunday to Friday, or null if there is no assignment
+     */
+    Doctor[] solve() {
+        if (!search(0, -1)) return null;
+        Doctor[] week = new Doctor[DAYS];
+        for (int day = 0; day < DAYS; day++) week[day] = candidates.get(chosen[day]);
+        return week;
+    }
+
+    private boolean search(int day, int before) {
+        if (day == DAYS) return true;
+        steps++;
+        boolean found = false;
+        for (int c = 0; c < type.length && !found; c++) {
+            if (c == before || (days[c] & 1 << day) == 0 || shifts[c] == MAX_SHIFTS) continue;
+            if (used[c][month[day]] >= left[c][month[day]]) continue;
+            boolean isNew = shifts[c] == 0;
+            if (isNew && (doctorsUsed == MAX_DOCTORS || tried[day][type[c]])) continue;
+            if (isNew) {
+                tried[day][type[c]] = true;
+                doctorsUsed++;
+            }
+            shifts[c]++;
+            used[c][month[day]]++;
+            chosen[day] = c;
+            found = search(day + 1, c);
+            shifts[c]--;
+            used[c][month[day]]--;
+            if (isNew) doctorsUsed--;
+        }
+        for (int c = 0; c < type.length; c++) tried[day][type[c]] = false;
+        return found;
+    }
+}
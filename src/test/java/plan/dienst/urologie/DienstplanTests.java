@@ -0,0 +1,119 @@
+package plan.dienst.urologie;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DienstplanTests {
+
+    private final Roster roster = new Roster(new ClassPathResource("roster.json"));
+    private final Jobs jobs = new Jobs(roster);
+    private final Doctors doctors = new Doctors(roster);
+    private final Statistics statistics = new Statistics(jobs, doctors, new DataFinder(jobs));
+    private Dienstplan dienstplan;
+    private ScoreTracker tracker;
+    private Doctor sabine;
+    private Doctor nigel;
+
+    @BeforeEach
+    void setUp() {
+        dienstplan = new Dienstplan(doctors.size(), jobs.size());
+        dienstplan.initDates(2024, 1);
+        tracker = statistics.track(dienstplan, 2024, 1);
+        sabine = doctors.getDoctor("Sabine");
+        nigel = doctors.getDoctor("Nigel");
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 6), jobs.getDienst(), sabine);
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 8), jobs.getOp(), sabine, nigel);
+        dienstplan.assignDoctors(LocalDate.of(2024, 2, 3), jobs.getDienst(), nigel);
+    }
+
+    @Test
+    void rollbackToUndoesAssignmentsAndRemovals() {
+        List<Object> before = state();
+        int mark = dienstplan.mark();
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 7), jobs.getDienst(), nigel);
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 9), jobs.getOp(), sabine, nigel);
+        dienstplan.assignDoctors(LocalDate.of(2024, 2, 4), jobs.getDienst(), sabine);
+        dienstplan.removeDoctor(LocalDate.of(2024, 1, 6), jobs.getDienst(), sabine);
+        dienstplan.removeDoctor(LocalDate.of(2024, 1, 8), jobs.getOp(), nigel);
+        assertNotEquals(before, state());
+        dienstplan.rollbackTo(mark);
+        assertEquals(before, state());
+    }
+
+    @Test
+    void rollbackToUnplansDaysAddedSinceTheMark() {
+        LocalDate afterQuarter = dienstplan.getEndDate().plusDays(3);
+        assertFalse(dienstplan.isValidDate(afterQuarter));
+        int mark = dienstplan.mark();
+        dienstplan.assignDoctors(afterQuarter, jobs.getDienst(), sabine);
+        assertTrue(dienstplan.isValidDate(afterQuarter));
+        dienstplan.rollbackTo(mark);
+        assertFalse(dienstplan.isValidDate(afterQuarter));
+        assertFalse(dienstplan.isDoctorWorking(afterQuarter, jobs.getDienst(), sabine));
+    }
+
+    @Test
+    void rollbackToAnInnerMarkKeepsTheChangesBeforeIt() {
+        List<Object> before = state();
+        int outer = dienstplan.mark();
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 13), jobs.getDienst(), nigel);
+        List<Object> between = state();
+        int inner = dienstplan.mark();
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 14), jobs.getDienst(), sabine);
+        dienstplan.removeDoctor(LocalDate.of(2024, 1, 13), jobs.getDienst(), nigel);
+        dienstplan.rollbackTo(inner);
+        assertEquals(between, state());
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 15), jobs.getOp(), sabine);
+        dienstplan.rollbackTo(outer);
+        assertEquals(before, state());
+    }
+
+    @Test
+    void commitKeepsTheChanges() {
+        int mark = dienstplan.mark();
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 7), jobs.getDienst(), nigel);
+        dienstplan.removeDoctor(LocalDate.of(2024, 1, 6), jobs.getDienst(), sabine);
+        List<Object> changed = state();
+        dienstplan.commit();
+        dienstplan.rollbackTo(mark);
+        assertEquals(changed, state());
+    }
+
+    @Test
+    void changesWithoutAMarkAreNotRecorded() {
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 7), jobs.getDienst(), nigel);
+        List<Object> changed = state();
+        dienstplan.rollbackTo(0);
+        assertEquals(changed, state());
+    }
+
+    // everything rollbackTo has to restore: the bits, the monthly counters, the planned days and the tracked score
+    private List<Object> state() {
+        List<Object> state = new ArrayList<>();
+        List<Job> allJobs = new ArrayList<>(jobs.getAllJobs());
+        allJobs.add(jobs.getUrlaub());
+        LocalDate start = dienstplan.getStartDate();
+        LocalDate end = dienstplan.getEndDate().plusDays(7);
+        for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+            state.add(dienstplan.isValidDate(date));
+            for (Job job : allJobs) state.add(dienstplan.getAssignedDoctors(date, job));
+        }
+        for (LocalDate month = start.withDayOfMonth(1); !month.isAfter(end); month = month.plusMonths(1))
+            for (Doctor doctor : doctors.getAllDoctors())
+                for (Job job : allJobs) {
+                    state.add(dienstplan.getTimesScheduledInMonth(month, doctor, job));
+                    state.add(dienstplan.getTimesScheduledOnWeekendsInMonth(month, doctor, job));
+                }
+        state.add(tracker.getScore());
+        state.add(tracker.getEmptyJobs());
+        state.add(tracker.getDoctorsNotWorking());
+        return state;
+    }
+}
@@ -0,0 +1,163 @@
+package plan.dienst.urologie;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanCacheTests {
+
+    private final Planner planner;
+
+    PlanCacheTests() {
+        Roster roster = new Roster(new ClassPathResource("roster.json"));
+        Jobs jobs = new Jobs(roster);
+        Doctors doctors = new Doctors(roster);
+        DataFinder dataFinder = new DataFinder(jobs);
+        DayJobDecider dayJobDecider = new DayJobDecider(jobs, doctors, dataFinder);
+        ShiftDecider shiftDecider = new ShiftDecider(jobs, dataFinder);
+        Statistics statistics = new Statistics(jobs, doctors, dataFinder);
+        PlanMetrics planMetrics = new PlanMetrics(new SimpleMeterRegistry());
+        LocalSearch localSearch = new LocalSearch(jobs, doctors, dayJobDecider, shiftDecider, statistics);
+        PlanBuilder planBuilder = new PlanBuilder(jobs, doctors, dataFinder, dayJobDecider, shiftDecider,
+                new ShiftOrganizer(shiftDecider, doctors, jobs, dataFinder, planMetrics), statistics, localSearch,
+                planMetrics);
+        planner = new Planner(jobs, doctors, dayJobDecider, shiftDecider, statistics, planBuilder, localSearch,
+                new PlanReporter(jobs, doctors, dataFinder, statistics, planBuilder), planMetrics);
+    }
+
+    @Test
+    void theFingerprintDoesNotDependOnThePresetOrder() {
+        PlanCache planCache = new PlanCache(10, 1 << 20, "");
+        Presets presets = new Presets.Builder(2024)
+                .dienst("Sabine", 1, 6)
+                .urlaub("Nigel", 1, 13, 1, 17)
+                .dienst("Sebastian", 1, 13)
+                .build();
+        Presets reordered = new Presets.Builder(2024)
+                .dienst("Sebastian", 1, 13)
+                .urlaub("Nigel", 1, 13, 1, 17)
+                .dienst("Sabine", 1, 6)
+                .build();
+        Presets other = new Presets.Builder(2024)
+                .dienst("Sabine", 1, 7)
+                .urlaub("Nigel", 1, 13, 1, 17)
+                .dienst("Sebastian", 1, 13)
+                .build();
+        String key = planCache.fingerprint(planner, search(presets));
+        assertEquals(key, planCache.fingerprint(planner, search(reordered)));
+        assertNotEquals(key, planCache.fingerprint(planner, search(other)));
+        assertNotEquals(key, planCache.fingerprint(planner, search(presets).seed(2)));
+    }
+
+    @Test
+    void theFingerprintCoversUrlaub() {
+        PlanCache planCache = new PlanCache(10, 1 << 20, "");
+        Roster roster = new Roster(new ClassPathResource("roster.json"));
+        List<Job> jobs = new ArrayList<>(roster.getJobs());
+        int urlaub = planner.getJobs().getUrlaub().getId();
+        Job original = jobs.get(urlaub);
+        jobs.set(urlaub, new Job.Builder()
+                .setName(original.getName())
+                .setVerfugbareTage(original.getVerfugbareTage().toArray(new DayOfWeek[0]))
+                .setOneDoctorPerWeek(original.isOneDoctorPerWeek())
+                .setMaxPerMonthPerDoctor(original.getMaxPerMonthPerDoctor())
+                .setMaxDoctorsPerDay(original.getMaxDoctorsPerDay() + 1)
+                .setDayJob(original.isDayJob())
+                .build());
+        Planner other = planner.forRoster(new Roster(roster.getDoctors(), jobs));
+        Presets presets = new Presets.Builder(2024).build();
+        assertNotEquals(planCache.fingerprint(planner, search(presets)),
+                planCache.fingerprint(other, search(presets)));
+    }
+
+    // the time budget is left out, so that a longer search goes on from the cached one
+    @Test
+    void theFingerprintLeavesOutTheTimeBudget() {
+        PlanCache planCache = new PlanCache(10, 1 << 20, "");
+        Presets presets = new Presets.Builder(2024).build();
+        assertEquals(planCache.fingerprint(planner, search(presets)),
+                planCache.fingerprint(planner, search(presets).timeBudget(Duration.ofMinutes(5))));
+    }
+
+    @Test
+    void dropsTheLeastRecentlyUsedEntry() {
+        PlanCache planCache = new PlanCache(2, 1 << 20, "");
+        planCache.put(cached("a", 10));
+        planCache.put(cached("b", 10));
+        assertNotNull(planCache.get("a"));
+        planCache.put(cached("c", 10));
+        assertEquals(2, planCache.size());
+        assertNotNull(planCache.get("a"));
+        assertNull(planCache.get("b"));
+        assertNotNull(planCache.get("c"));
+    }
+
+    @Test
+    void dropsEntriesOverTheBytes() {
+        long size = cached("a", 100).getSizeInBytes();
+        PlanCache planCache = new PlanCache(10, 2 * size, "");
+        planCache.put(cached("a", 100));
+        planCache.put(cached("b", 100));
+        assertEquals(2, planCache.size());
+        planCache.put(cached("c", 100));
+        assertEquals(2, planCache.size());
+        assertNull(planCache.get("a"));
+        // an entry larger than the limit is kept alone rather than not at all
+        planCache.put(cached("d", 1000));
+        assertEquals(1, planCache.size());
+        assertNotNull(planCache.get("d"));
+    }
+
+    @Test
+    void aPlanComesBackFromTheDirectory(@TempDir Path directory) {
+        Presets presets = new Presets.Builder(2024).dienst("Sabine", 1, 6).urlaub("Nigel", 1, 13, 1, 17).build();
+        PlanSearch.Builder builder = search(presets).maxRestarts(5).parallelism(1);
+        PlanCache planCache = new PlanCache(10, 1 << 20, directory.toString());
+        String key = planCache.fingerprint(planner, builder);
+        PlanSearch search = builder.build();
+        search.run();
+        Dienstplan best = search.getBest();
+        planCache.put(planCache.toCachedPlan(planner, key, search, 1234, best, 2024, 1));
+
+        PlanCache restarted = new PlanCache(10, 1 << 20, directory.toString());
+        CachedPlan cached = restarted.get(key);
+        assertNotNull(cached);
+        assertEquals(search.getRunSeed(), cached.getRunSeed());
+        assertEquals(search.getNextRestart(), cached.getNextRestart());
+        assertEquals(search.getBestScore(), cached.getSearchScore());
+        assertEquals(1234, cached.getSearchedMillis());
+        assertEquals(PlanSearch.StopReason.MAX_RESTARTS, cached.getStopReason());
+        Dienstplan plan = restarted.toPlan(planner, cached);
+        assertEquals(best.getScore(), plan.getScore());
+        assertEquals(assignments(best), assignments(plan));
+    }
+
+    private PlanSearch.Builder search(Presets presets) {
+        return new PlanSearch.Builder(planner.getPlanBuilder(), presets, 2024, 1).seed(1).timeBudget(Duration.ofSeconds(1));
+    }
+
+    private static CachedPlan cached(String key, int assignments) {
+        CachedPlan cached = new CachedPlan();
+        cached.setKey(key);
+        cached.setAssignments(new int[assignments]);
+        return cached;
+    }
+
+    private List<List<Doctor>> assignments(Dienstplan dienstplan) {
+        List<List<Doctor>> assignments = new ArrayList<>();
+        for (LocalDate date = dienstplan.getStartDate(); !date.isAfter(dienstplan.getEndDate().plusDays(7));
+             date = date.plusDays(1))
+            for (Job job : planner.getJobs().getJobsById()) assignments.add(dienstplan.getAssignedDoctors(date, job));
+        return assignments;
+    }
+}
@@ -0,0 +1,91 @@
+package plan.dienst.urologie;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlanSearchTests {
+
+    private final Roster roster = new Roster(new ClassPathResource("roster.json"));
+    private final Jobs jobs = new Jobs(roster);
+    private final Doctors doctors = new Doctors(roster);
+    private final PlanBuilder planBuilder;
+    private final Presets presets = new Presets.Builder(2024)
+            .dienst("Sabine", 1, 6)
+            .dienst("Sebastian", 1, 13)
+            .urlaub("Nigel", 1, 13, 1, 28)
+            .urlaub("Christoph", 1, 22, 1, 26)
+            .urlaub("Paktis", 2, 10, 2, 18)
+            .urlaub("Jette", 2, 10, 2, 18)
+            .urlaub("Dimi", 2, 24, 3, 12)
+            .build();
+
+    PlanSearchTests() {
+        DataFinder dataFinder = new DataFinder(jobs);
+        DayJobDecider dayJobDecider = new DayJobDecider(jobs, doctors, dataFinder);
+        ShiftDecider shiftDecider = new ShiftDecider(jobs, dataFinder);
+        Statistics statistics = new Statistics(jobs, doctors, dataFinder);
+        PlanMetrics planMetrics = new PlanMetrics(new SimpleMeterRegistry());
+        planBuilder = new PlanBuilder(jobs, doctors, dataFinder, dayJobDecider, shiftDecider,
+                new ShiftOrganizer(shiftDecider, doctors, jobs, dataFinder, planMetrics), statistics,
+                new LocalSearch(jobs, doctors, dayJobDecider, shiftDecider, statistics), planMetrics);
+    }
+
+    @Test
+    void theBestSeedsRebuildTheirPlans() {
+        PlanSearch search = search(2);
+        List<TopK.Entry<Long>> best = search.run();
+        assertEquals(5, best.size());
+        for (TopK.Entry<Long> entry : best) {
+            Dienstplan plan = planBuilder.makePlan(presets, 2024, 1, entry.getItem());
+            Dienstplan again = planBuilder.makePlan(presets, 2024, 1, entry.getItem());
+            assertEquals(entry.getScore(), plan.getScore(), "seed " + entry.getItem());
+            assertEquals(assignments(plan), assignments(again), "seed " + entry.getItem());
+        }
+        Dienstplan plan = planBuilder.makePlan(presets, 2024, 1, best.get(0).getItem());
+        assertEquals(assignments(plan), assignments(search.getBest()));
+        assertEquals(search.getBestScore(), search.getBest().getScore());
+    }
+
+    @Test
+    void theRunSeedGivesTheSameSeedsOnAnyNumberOfThreads() {
+        List<TopK.Entry<Long>> oneThread = search(1).run();
+        List<TopK.Entry<Long>> threeThreads = search(3).run();
+        assertEquals(oneThread.stream().map(TopK.Entry::getItem).toList(),
+                threeThreads.stream().map(TopK.Entry::getItem).toList());
+        assertEquals(oneThread.stream().map(TopK.Entry::getScore).toList(),
+                threeThreads.stream().map(TopK.Entry::getScore).toList());
+    }
+
+    // a resumed search whose best score doesn't fit its seed, as after a change of the planner with the same cache
+    @Test
+    void getBestThrowsWhenTheSeedRebuildsAnotherScore() {
+        long seed = PlanBuilder.restartSeed(7, 0);
+        double score = planBuilder.makePlan(presets, 2024, 1, seed).getScore();
+        PlanSearch search = new PlanSearch.Builder(planBuilder, presets, 2024, 1)
+                .resume(7, 1, seed, score + 1)
+                .build();
+        assertThrows(IllegalStateException.class, search::getBest);
+    }
+
+    private PlanSearch search(int parallelism) {
+        return new PlanSearch.Builder(planBuilder, presets, 2024, 1)
+                .seed(7)
+                .parallelism(parallelism)
+                .maxRestarts(40)
+                .build();
+    }
+
+    private List<List<Doctor>> assignments(Dienstplan dienstplan) {
+        List<List<Doctor>> assignments = new ArrayList<>();
+        for (LocalDate date : dienstplan.getDates())
+            for (Job job : jobs.getJobsById()) assignments.add(dienstplan.getAssignedDoctors(date, job));
+        return assignments;
+    }
+}
@@ -0,0 +1,93 @@
+package plan.dienst.urologie;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlannerTests {
+
+    private final Planner planner;
+    private final Presets presets = new Presets.Builder(2024).build();
+
+    PlannerTests() {
+        Roster roster = new Roster(new ClassPathResource("roster.json"));
+        Jobs jobs = new Jobs(roster);
+        Doctors doctors = new Doctors(roster);
+        DataFinder dataFinder = new DataFinder(jobs);
+        DayJobDecider dayJobDecider = new DayJobDecider(jobs, doctors, dataFinder,
+                List.of(DayJobRule.OTHER_WEEKLY_JOB, DayJobRule.JOB_FULL));
+        ShiftDecider shiftDecider = new ShiftDecider(jobs, dataFinder, List.of(ShiftRule.TOO_MANY_SHIFTS));
+        Statistics statistics = new Statistics(jobs, doctors, dataFinder);
+        PlanMetrics planMetrics = new PlanMetrics(new SimpleMeterRegistry());
+        LocalSearch localSearch = new LocalSearch(jobs, doctors, dayJobDecider, shiftDecider, statistics);
+        PlanBuilder planBuilder = new PlanBuilder(jobs, doctors, dataFinder, dayJobDecider, shiftDecider,
+                new ShiftOrganizer(shiftDecider, doctors, jobs, dataFinder, planMetrics), statistics, localSearch,
+                planMetrics);
+        planBuilder.setRepairSteps(50);
+        planner = new Planner(jobs, doctors, dayJobDecider, shiftDecider, statistics, planBuilder, localSearch,
+                new PlanReporter(jobs, doctors, dataFinder, statistics, planBuilder), planMetrics);
+    }
+
+    @Test
+    void forRosterPlansWithTheDoctorsOfTheRoster() {
+        Planner smaller = planner.forRoster(withoutLastDoctor());
+        assertEquals(planner.getDoctors().size() - 1, smaller.getDoctors().size());
+        assertEquals(50, smaller.getPlanBuilder().getRepairSteps());
+        Dienstplan plan = smaller.getPlanBuilder().makePlan(presets, 2024, 1, 1);
+        for (LocalDate date : plan.getDates())
+            for (Job job : smaller.getJobs().getJobsById())
+                for (Doctor doctor : plan.getAssignedDoctors(date, job))
+                    assertSame(doctor, smaller.getDoctors().getAllDoctors().get(doctor.getId()));
+        PlanReport report = smaller.getPlanReporter().report(plan, 2024, 1);
+        assertEquals(smaller.getDoctors().size(), report.getJobsPerMonth().size());
+    }
+
+    @Test
+    void forRosterKeepsTheRuleOrder() {
+        List<DayJobRule> dayJobOrder = planner.getDayJobDecider().getRules().getOrder();
+        assertEquals(List.of(DayJobRule.OTHER_WEEKLY_JOB, DayJobRule.JOB_FULL), dayJobOrder.subList(0, 2));
+        assertEquals(DayJobRule.values().length, dayJobOrder.size());
+        assertEquals(ShiftRule.TOO_MANY_SHIFTS, planner.getShiftDecider().getRules().getOrder().get(0));
+        Planner other = planner.forRoster(new Roster(new ClassPathResource("roster.json")));
+        assertEquals(dayJobOrder, other.getDayJobDecider().getRules().getOrder());
+        assertEquals(planner.getShiftDecider().getRules().getOrder(), other.getShiftDecider().getRules().getOrder());
+    }
+
+    @Test
+    void aRosterHasItsOwnFingerprint() {
+        PlanCache planCache = new PlanCache(10, 1 << 20, "");
+        Planner same = planner.forRoster(new Roster(new ClassPathResource("roster.json")));
+        Planner smaller = planner.forRoster(withoutLastDoctor());
+        String key = planCache.fingerprint(planner, search(planner));
+        assertEquals(key, planCache.fingerprint(same, search(same)));
+        assertNotEquals(key, planCache.fingerprint(smaller, search(smaller)));
+    }
+
+    @Test
+    void aRosterWithoutTheDienstIsRejected() {
+        Roster roster = new Roster(new ClassPathResource("roster.json"));
+        List<Job> jobs = new ArrayList<>(roster.getJobs());
+        jobs.removeIf(job -> job.getName().equalsIgnoreCase(Jobs.DIENST));
+        assertThrows(IllegalArgumentException.class,
+                () -> planner.forRoster(new Roster(roster.getDoctors(), jobs)));
+    }
+
+    private PlanSearch.Builder search(Planner planner) {
+        return new PlanSearch.Builder(planner.getPlanBuilder(), presets, 2024, 1).seed(1).timeBudget(Duration.ofSeconds(1));
+    }
+
+    // read again, as Doctors gives the doctors of a roster their ids
+    private static Roster withoutLastDoctor() {
+        Roster roster = new Roster(new ClassPathResource("roster.json"));
+        List<Doctor> doctors = new ArrayList<>(roster.getDoctors());
+        doctors.remove(doctors.size() - 1);
+        return new Roster(doctors, roster.getJobs());
+    }
+}
@@ -0,0 +1,81 @@
+package plan.dienst.urologie;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoreTrackerTests {
+
+    private static final double EPSILON = 1e-9;
+
+    private final Roster roster = new Roster(new ClassPathResource("roster.json"));
+    private final Jobs jobs = new Jobs(roster);
+    private final Doctors doctors = new Doctors(roster);
+    private final Statistics statistics;
+    private final PlanBuilder planBuilder;
+
+    ScoreTrackerTests() {
+        DataFinder dataFinder = new DataFinder(jobs);
+        DayJobDecider dayJobDecider = new DayJobDecider(jobs, doctors, dataFinder);
+        ShiftDecider shiftDecider = new ShiftDecider(jobs, dataFinder);
+        statistics = new Statistics(jobs, doctors, dataFinder);
+        PlanMetrics planMetrics = new PlanMetrics(new SimpleMeterRegistry());
+        planBuilder = new PlanBuilder(jobs, doctors, dataFinder, dayJobDecider, shiftDecider,
+                new ShiftOrganizer(shiftDecider, doctors, jobs, dataFinder, planMetrics), statistics,
+                new LocalSearch(jobs, doctors, dayJobDecider, shiftDecider, statistics), planMetrics);
+    }
+
+    // makePlan scores with a tracker that follows every assignment; a new tracker counts the finished plan
+    @Test
+    void agreesWithStatisticsOnMadePlans() {
+        Presets presets = new Presets.Builder(2024).build();
+        for (int quarter = 1; quarter <= 4; quarter++) {
+            for (long seed = 1; seed <= 30; seed++) {
+                Dienstplan plan = planBuilder.makePlan(presets, 2024, quarter, seed);
+                String name = "Q" + quarter + " seed " + seed;
+                assertEquals(statistics.getScore(plan, 2024, quarter), plan.getScore(), EPSILON, name);
+                ScoreTracker tracker = statistics.track(plan, 2024, quarter);
+                tracker.detach();
+                assertAgrees(tracker, plan, 2024, quarter, name);
+            }
+        }
+    }
+
+    @Test
+    void followsRandomAssignmentsAndRemovals() {
+        SplittableRandom random = new SplittableRandom(1);
+        Dienstplan plan = planBuilder.makePlan(new Presets.Builder(2024).build(), 2024, 2, 1);
+        ScoreTracker tracker = statistics.track(plan, 2024, 2);
+        List<LocalDate> dates = plan.getDates();
+        List<Job> allJobs = jobs.getJobsById();
+        for (int step = 1; step <= 5000; step++) {
+            LocalDate date = dates.get(random.nextInt(dates.size()));
+            Job job = allJobs.get(random.nextInt(allJobs.size()));
+            Doctor doctor = doctors.getAllDoctors().get(random.nextInt(doctors.size()));
+            if (plan.isDoctorWorking(date, job, doctor)) plan.removeDoctor(date, job, doctor);
+            else plan.assignDoctors(date, job, doctor);
+            // reading the distributions recomputes them, so they are also checked between changes
+            if (step % 50 == 0 || random.nextInt(10) == 0) assertAgrees(tracker, plan, 2024, 2, "step " + step);
+        }
+        tracker.detach();
+    }
+
+    private void assertAgrees(ScoreTracker tracker, Dienstplan plan, int year, int quarter, String name) {
+        int emptyJobs = statistics.getEmptyJobs(plan);
+        int notWorking = statistics.doctorsNotWorking(plan);
+        double shifts = statistics.getShiftDistributionScore(statistics.getShiftDistribution(plan, year, quarter));
+        double ops = statistics.getOPdistributionScore(statistics.getOPdistribution(plan, year, quarter));
+        assertEquals(emptyJobs, tracker.getEmptyJobs(), name);
+        assertEquals(notWorking, tracker.getDoctorsNotWorking(), name);
+        assertEquals(shifts, tracker.getShiftDistributionScore(), EPSILON, name);
+        assertEquals(ops, tracker.getOPdistributionScore(), EPSILON, name);
+        assertEquals(statistics.getScore(plan, year, quarter), tracker.getScore(), EPSILON, name);
+        assertEquals(emptyJobs * 100 + notWorking * 20 + shifts * 10 + ops, tracker.getWeightedScore(), EPSILON, name);
+    }
+}
@@ -0,0 +1,63 @@
+package plan.dienst.urologie;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolverTests {
+
+    private final Roster roster = new Roster(new ClassPathResource("roster.json"));
+    private final Jobs jobs = new Jobs(roster);
+    private final Doctors doctors = new Doctors(roster);
+    private final DataFinder dataFinder = new DataFinder(jobs);
+    private final DayJobDecider dayJobDecider = new DayJobDecider(jobs, doctors, dataFinder);
+    private final ShiftDecider shiftDecider = new ShiftDecider(jobs, dataFinder);
+    private final Statistics statistics = new Statistics(jobs, doctors, dataFinder);
+    private final Presets presets = new Presets.Builder(2024)
+            .dienst("Sabine", 1, 6)
+            .dienst("Sebastian", 1, 13)
+            .urlaub("Nigel", 1, 13, 1, 28)
+            .urlaub("Christoph", 1, 22, 1, 26)
+            .urlaub("Paktis", 2, 10, 2, 18)
+            .urlaub("Jette", 2, 10, 2, 18)
+            .urlaub("Dimi", 2, 24, 3, 12)
+            .build();
+
+    // solve throws unless CP-SAT reports OPTIMAL or FEASIBLE; one worker finds a first plan in about 10 seconds
+    @Test
+    void findsAPlanThatKeepsTheRules() {
+        Solver solver = new Solver(jobs, doctors, statistics);
+        solver.setTimeLimitSeconds(20);
+        Dienstplan plan = solver.solve(presets, 2024, 1);
+        assertEquals(List.of(), violations(plan));
+        ScoreTracker tracker = statistics.track(plan, 2024, 1);
+        assertEquals(tracker.getWeightedScore(), plan.getScore(), 1e-9);
+    }
+
+    // every assignment but the presets taken out and asked for again, as the deciders see the rest of the plan
+    private List<String> violations(Dienstplan plan) {
+        List<String> violations = new ArrayList<>();
+        for (LocalDate date : plan.getDates())
+            for (Job job : jobs.getAllJobs())
+                for (Doctor doctor : plan.getAssignedDoctors(date, job)) {
+                    if (isPreset(date, job, doctor)) continue;
+                    plan.removeDoctor(date, job, doctor);
+                    Enum<?> rejection = job == jobs.getDienst()
+                            ? shiftDecider.getRules().firstRejection(plan, doctor, date, job)
+                            : dayJobDecider.getRules().firstRejection(plan, doctor, date, job);
+                    plan.assignDoctors(date, job, doctor);
+                    if (rejection != null) violations.add(date + " " + job.getName() + " " + doctor.getName() + " " + rejection);
+                }
+        return violations;
+    }
+
+    private boolean isPreset(LocalDate date, Job job, Doctor doctor) {
+        return presets.getPresets().stream().anyMatch(preset -> preset.getDate().equals(date)
+                && jobs.getJob(preset.getJobName()) == job && doctors.getDoctor(preset.getDocName()) == doctor);
+    }
+}
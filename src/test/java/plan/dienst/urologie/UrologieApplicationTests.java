@@ -3,7 +3,7 @@ package plan.dienst.urologie;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "planner.cli.enabled=false")
 class UrologieApplicationTests {
 
 	@Test
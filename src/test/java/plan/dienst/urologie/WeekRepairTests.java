@@ -0,0 +1,153 @@
+package plan.dienst.urologie;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeekRepairTests {
+
+    private final Roster roster = new Roster(new ClassPathResource("roster.json"));
+    private final Jobs jobs = new Jobs(roster);
+    private final Doctors doctors = new Doctors(roster);
+    private final DataFinder dataFinder = new DataFinder(jobs);
+    private final DayJobDecider dayJobDecider = new DayJobDecider(jobs, doctors, dataFinder);
+    private final List<Job> dayJobs = List.of(jobs.getEaz(), jobs.getZna(), jobs.getStation());
+    private final PlanBuilder planBuilder;
+    private final Presets presets = new Presets.Builder(2024)
+            .dienst("Sabine", 1, 6)
+            .dienst("Sebastian", 1, 13)
+            .urlaub("Nigel", 1, 13, 1, 28)
+            .urlaub("Christoph", 1, 22, 1, 26)
+            .urlaub("Paktis", 2, 10, 2, 18)
+            .urlaub("Jette", 2, 10, 2, 18)
+            .urlaub("Dimi", 2, 24, 3, 12)
+            .build();
+
+    WeekRepairTests() {
+        ShiftDecider shiftDecider = new ShiftDecider(jobs, dataFinder);
+        Statistics statistics = new Statistics(jobs, doctors, dataFinder);
+        PlanMetrics planMetrics = new PlanMetrics(new SimpleMeterRegistry());
+        planBuilder = new PlanBuilder(jobs, doctors, dataFinder, dayJobDecider, shiftDecider,
+                new ShiftOrganizer(shiftDecider, doctors, jobs, dataFinder, planMetrics), statistics,
+                new LocalSearch(jobs, doctors, dayJobDecider, shiftDecider, statistics), planMetrics);
+    }
+
+    // one step can't finish a week, so every week keeps its greedy fill
+    @Test
+    void oneStepKeepsTheGreedyPlan() {
+        for (long seed = 1; seed <= 5; seed++) {
+            planBuilder.setRepairSteps(0);
+            Dienstplan greedy = planBuilder.makePlan(presets, 2024, 1, seed);
+            planBuilder.setRepairSteps(1);
+            Dienstplan repaired = planBuilder.makePlan(presets, 2024, 1, seed);
+            assertEquals(assignments(greedy), assignments(repaired), "seed " + seed);
+            assertEquals(greedy.getScore(), repaired.getScore(), "seed " + seed);
+        }
+    }
+
+    /*
+    With the part-time doctors first the greedy fill gives Jette and Christoph the EAZ on Monday, and it stays half
+    full on the days only one of them can come, as a full-time doctor can't join a part-time one.
+     */
+    @Test
+    void repairFillsTheGapsOfTheGreedyWeek() {
+        Dienstplan dienstplan = new Dienstplan(doctors.size(), jobs.size());
+        dienstplan.initDates(2024, 1);
+        List<Doctor> order = new ArrayList<>();
+        order.addAll(doctors.getAllDoctors().stream().filter(doctor -> !doctor.isVollzeit()).toList());
+        order.addAll(doctors.getAllDoctors().stream().filter(Doctor::isVollzeit).toList());
+        dienstplan.setDoctorOrder(order);
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 3), jobs.getDienst(), doctors.getDoctor("Nigel"));
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 4), jobs.getUrlaub(), doctors.getDoctor("Mark"));
+        dienstplan.assignDoctors(LocalDate.of(2024, 1, 10), jobs.getDienst(), doctors.getDoctor("Timo"));
+        List<LocalDate> week = week(LocalDate.of(2024, 1, 1));
+        int mark = dienstplan.mark();
+        List<Doctor> before = new ArrayList<>(dienstplan.getDoctorOrder());
+        fillGreedily(dienstplan, week);
+        int greedyGaps = gaps(dienstplan, week);
+        assertEquals(3, greedyGaps); // Wednesday to Friday
+        List<List<Doctor>> outsideTheDayJobs = assignmentsOutside(dienstplan, week);
+
+        int gaps = new WeekRepair(dienstplan, dataFinder, dayJobDecider, jobs.getOp(), week, dayJobs, 1000)
+                .repair(mark, before);
+        assertTrue(gaps < greedyGaps, gaps + " gaps, greedy " + greedyGaps);
+        assertEquals(gaps, gaps(dienstplan, week));
+        assertEquals(outsideTheDayJobs, assignmentsOutside(dienstplan, week));
+        assertDayJobDeciderAgrees(dienstplan, week);
+    }
+
+    // the loop of PlanBuilder.makePlan: each day job date by date in the doctor order, then the OP
+    private void fillGreedily(Dienstplan dienstplan, List<LocalDate> week) {
+        List<Job> dayJobsAndOp = new ArrayList<>(dayJobs);
+        dayJobsAndOp.add(jobs.getOp());
+        for (LocalDate date : week)
+            for (Job job : dayJobsAndOp) {
+                List<Doctor> sorted = dataFinder.sortByScheduledJobsThisMonth(dienstplan, date,
+                        dienstplan.getDoctorOrder(), job);
+                for (Doctor doctor : sorted)
+                    if (dayJobDecider.canWork(dienstplan, doctor, date, job)) dienstplan.assignDoctors(date, job, doctor);
+            }
+    }
+
+    private int gaps(Dienstplan dienstplan, List<LocalDate> week) {
+        int gaps = 0;
+        for (LocalDate date : week)
+            for (Job job : dayJobs) {
+                if (!job.getVerfugbareTage().contains(date.getDayOfWeek())) continue;
+                double fullness = 0;
+                for (Doctor doctor : dienstplan.getAssignedDoctors(date, job)) fullness += doctor.isVollzeit() ? 1 : .5;
+                if (fullness < 1) gaps++;
+            }
+        return gaps;
+    }
+
+    // everything but the day jobs and the OP of the week
+    private List<List<Doctor>> assignmentsOutside(Dienstplan dienstplan, List<LocalDate> week) {
+        List<List<Doctor>> assignments = new ArrayList<>();
+        for (LocalDate date : dienstplan.getDates())
+            for (Job job : jobs.getJobsById())
+                if (!week.contains(date) || job == jobs.getDienst() || job == jobs.getUrlaub())
+                    assignments.add(dienstplan.getAssignedDoctors(date, job));
+        return assignments;
+    }
+
+    // the repaired week taken out and put back date by date, each doctor asking DayJobDecider again
+    private void assertDayJobDeciderAgrees(Dienstplan dienstplan, List<LocalDate> week) {
+        List<Job> dayJobsAndOp = new ArrayList<>(dayJobs);
+        dayJobsAndOp.add(jobs.getOp());
+        List<List<Doctor>> repaired = new ArrayList<>();
+        for (LocalDate date : week)
+            for (Job job : dayJobsAndOp) {
+                List<Doctor> assigned = dienstplan.getAssignedDoctors(date, job);
+                repaired.add(assigned);
+                for (Doctor doctor : assigned) dienstplan.removeDoctor(date, job, doctor);
+            }
+        int i = 0;
+        for (LocalDate date : week)
+            for (Job job : dayJobsAndOp)
+                for (Doctor doctor : repaired.get(i++)) {
+                    assertTrue(dayJobDecider.canWork(dienstplan, doctor, date, job),
+                            doctor.getName() + " can't work " + job.getName() + " on " + date);
+                    dienstplan.assignDoctors(date, job, doctor);
+                }
+    }
+
+    private static List<LocalDate> week(LocalDate monday) {
+        return monday.datesUntil(monday.plusDays(7)).toList();
+    }
+
+    private List<List<Doctor>> assignments(Dienstplan dienstplan) {
+        List<Job> allJobs = new ArrayList<>(jobs.getAllJobs());
+        allJobs.add(jobs.getUrlaub());
+        List<List<Doctor>> assignments = new ArrayList<>();
+        for (LocalDate date : dienstplan.getDates())
+            for (Job job : allJobs) assignments.add(dienstplan.getAssignedDoctors(date, job));
+        return assignments;
+    }
+}
@@ -0,0 +1,113 @@
+package plan.dienst.urologie;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeekShiftsTests {
+
+    private static final int ALL_DAYS = (1 << WeekShifts.DAYS) - 1;
+    private static final int ONE_MONTH = WeekShifts.DAYS; // firstDayOfNextMonth of a week in one month
+
+    @Test
+    void fillsAWeekThreeDoctorsCanShare() {
+        List<Doctor> candidates = doctors(3);
+        int[] days = {ALL_DAYS, ALL_DAYS, ALL_DAYS};
+        int[][] left = {{4, 4}, {4, 4}, {4, 4}};
+        Doctor[] week = new WeekShifts(candidates, days, left, ONE_MONTH).solve();
+        assertNotNull(week);
+        assertValid(week, candidates, days, left, ONE_MONTH);
+    }
+
+    @Test
+    void twoDoctorsCantFillAWeek() {
+        List<Doctor> candidates = doctors(2);
+        int[][] left = {{4, 4}, {4, 4}};
+        assertNull(new WeekShifts(candidates, new int[]{ALL_DAYS, ALL_DAYS}, left, ONE_MONTH).solve());
+    }
+
+    @Test
+    void aDayNobodyCanWorkLeavesTheWeekEmpty() {
+        List<Doctor> candidates = doctors(4);
+        int withoutWednesday = ALL_DAYS & ~(1 << 3);
+        int[] days = {withoutWednesday, withoutWednesday, withoutWednesday, withoutWednesday};
+        int[][] left = {{4, 4}, {4, 4}, {4, 4}, {4, 4}};
+        assertNull(new WeekShifts(candidates, days, left, ONE_MONTH).solve());
+    }
+
+    // the month changes on Wednesday; the first doctor can only work in the new month and has no Dienste left there
+    @Test
+    void keepsToTheDiensteLeftInTheNextMonth() {
+        List<Doctor> candidates = doctors(4);
+        int[] days = {1 << 3 | 1 << 5, ALL_DAYS, ALL_DAYS, ALL_DAYS};
+        int[][] left = {{2, 0}, {2, 2}, {2, 2}, {2, 2}};
+        Doctor[] week = new WeekShifts(candidates, days, left, 3).solve();
+        assertNotNull(week);
+        assertValid(week, candidates, days, left, 3);
+        assertFalse(List.of(week).contains(candidates.get(0)));
+    }
+
+    // Wednesday to Friday need two doctors of the new month, as nobody works two days in a row
+    @Test
+    void oneDoctorLeftInTheNextMonthIsNotEnough() {
+        List<Doctor> candidates = doctors(3);
+        int[] days = {ALL_DAYS, ALL_DAYS, ALL_DAYS};
+        int[][] left = {{2, 0}, {2, 0}, {2, 2}};
+        assertNull(new WeekShifts(candidates, days, left, 3).solve());
+    }
+
+    @Test
+    void solutionsKeepToTheRules() {
+        SplittableRandom random = new SplittableRandom(1);
+        int solved = 0;
+        for (int i = 0; i < 2000; i++) {
+            int size = 2 + random.nextInt(5);
+            List<Doctor> candidates = doctors(size);
+            int[] days = new int[size];
+            int[][] left = new int[size][2];
+            for (int c = 0; c < size; c++) {
+                days[c] = random.nextInt(ALL_DAYS + 1);
+                left[c][0] = random.nextInt(4);
+                left[c][1] = random.nextInt(4);
+            }
+            int firstDayOfNextMonth = random.nextBoolean() ? ONE_MONTH : random.nextInt(WeekShifts.DAYS);
+            Doctor[] week = new WeekShifts(candidates, days, left, firstDayOfNextMonth).solve();
+            if (week == null) continue;
+            solved++;
+            assertValid(week, candidates, days, left, firstDayOfNextMonth);
+        }
+        assertTrue(solved > 0);
+    }
+
+    private static void assertValid(Doctor[] week, List<Doctor> candidates, int[] days, int[][] left,
+                                    int firstDayOfNextMonth) {
+        assertEquals(WeekShifts.DAYS, week.length);
+        int[] shifts = new int[candidates.size()];
+        int[][] used = new int[candidates.size()][2];
+        for (int day = 0; day < WeekShifts.DAYS; day++) {
+            int c = candidates.indexOf(week[day]);
+            assertTrue(c >= 0, "day " + day + " has no doctor");
+            assertTrue((days[c] & 1 << day) != 0, "doctor " + c + " can't work day " + day);
+            if (day > 0) assertNotSame(week[day - 1], week[day], "two days in a row on day " + day);
+            shifts[c]++;
+            used[c][day < firstDayOfNextMonth ? 0 : 1]++;
+        }
+        int doctorsUsed = 0;
+        for (int c = 0; c < candidates.size(); c++) {
+            if (shifts[c] > 0) doctorsUsed++;
+            assertTrue(shifts[c] <= WeekShifts.MAX_SHIFTS, "doctor " + c + " has " + shifts[c] + " Dienste");
+            assertTrue(used[c][0] <= left[c][0] && used[c][1] <= left[c][1], "doctor " + c + " is over the month");
+        }
+        assertTrue(doctorsUsed <= WeekShifts.MAX_DOCTORS, doctorsUsed + " doctors");
+    }
+
+    private static List<Doctor> doctors(int count) {
+        List<Doctor> doctors = new ArrayList<>();
+        for (int id = 0; id < count; id++) doctors.add(new Doctor.Builder().setId(id).setName("Doctor " + id).build());
+        return doctors;
+    }
+}